@@ -0,0 +1,59 @@
+package com.example.demo.bench;
+
+import com.example.demo.dto.CartResponse;
+import com.example.demo.entity.Cart;
+import com.example.demo.entity.CartItem;
+import com.example.demo.product.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Cart read/mutation paths on detached entities: response construction, totals and line changes
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartBenchmark {
+
+    @Param({"1", "10", "50", "200"})
+    public int lines;
+
+    private List<Product> products;
+    private Cart cart;
+    private Product extra;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        products = Fixtures.products(Math.max(lines + 1, 10));
+        cart = Fixtures.cart(lines, products);
+        extra = products.get(lines);
+    }
+
+    @Benchmark
+    public CartResponse cartResponse() {
+        return new CartResponse(cart);
+    }
+
+    @Benchmark
+    public BigDecimal totalAmount() {
+        return cart.getTotalAmount();
+    }
+
+    @Benchmark
+    public long recalculateTotals() {
+        cart.recalculateTotals();
+        return cart.getTotalAmountCents();
+    }
+
+    @Benchmark
+    public int addThenRemoveLine() {
+        CartItem item = new CartItem(cart, extra, 2);
+        cart.addItem(item);
+        cart.removeItem(item);
+        return cart.getTotalItems();
+    }
+}
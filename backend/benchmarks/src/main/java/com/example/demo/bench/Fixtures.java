@@ -0,0 +1,100 @@
+package com.example.demo.bench;
+
+import com.example.demo.DemoApplication;
+import com.example.demo.category.Category;
+import com.example.demo.entity.Cart;
+import com.example.demo.entity.CartItem;
+import com.example.demo.product.FakeStoreProduct;
+import com.example.demo.product.Product;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Deterministic synthetic data shared by the benchmarks: an upstream feed, the matching
+ * Product entities, carts, and an application context on a private in-memory H2 database.
+ */
+public final class Fixtures {
+
+    public static final int CATEGORIES = 20;
+    private static final String[] WORDS = {"phone", "cotton", "shirt", "ring", "silver", "laptop", "jacket",
+            "gold", "monitor", "backpack", "wireless", "slim", "classic", "casual", "pro", "mini"};
+
+    private Fixtures() {}
+
+    public static String category(int i) {
+        return "category-" + (i % CATEGORIES);
+    }
+
+    public static List<FakeStoreProduct> feed(int size) {
+        Random random = new Random(42);
+        List<FakeStoreProduct> out = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            BigDecimal price = BigDecimal.valueOf(100 + random.nextInt(100_000), 2);
+            out.add(new FakeStoreProduct((long) i, title, price, "Description of " + title + " for testing",
+                    category(i), "https://img.example.com/" + i + ".jpg"));
+        }
+        return out;
+    }
+
+    // Detached entities with ids and categories set, as the repository would return them
+    public static List<Product> products(int size) {
+        List<Category> categories = new ArrayList<>(CATEGORIES);
+        for (int c = 0; c < CATEGORIES; c++) {
+            Category category = new Category();
+            category.setId((long) c + 1);
+            category.setName(category(c));
+            categories.add(category);
+        }
+        Instant base = Instant.parse("2025-01-01T00:00:00Z");
+        List<Product> out = new ArrayList<>(size);
+        for (FakeStoreProduct s : feed(size)) {
+            Product p = new Product();
+            p.setId(s.id());
+            p.setExternalId(s.id());
+            p.setName(s.title());
+            p.setDescription(s.description());
+            p.setPrice(s.price());
+            p.setStock(100);
+            p.setImageUrl(s.image());
+            p.setCategory(categories.get((int) (s.id() % CATEGORIES)));
+            p.setCreatedAt(base.plusSeconds(s.id()));
+            p.setLastUpdated(p.getCreatedAt());
+            out.add(p);
+        }
+        return out;
+    }
+
+    public static Cart cart(int lines, List<Product> products) {
+        Cart cart = new Cart("bench-session");
+        for (int i = 0; i < lines; i++) {
+            cart.addItem(new CartItem(cart, products.get(i % products.size()), 1 + i % 3));
+        }
+        return cart;
+    }
+
+    /**
+     * Application context on its own in-memory database, with the upstream pointed nowhere.
+     * It is a servlet context on a random port because the security configuration needs one.
+     */
+    public static ConfigurableApplicationContext context(Map<String, Object> overrides) {
+        Map<String, Object> props = new HashMap<>();
+        props.put("spring.datasource.url", "jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        props.put("spring.jpa.show-sql", "false");
+        props.put("spring.main.banner-mode", "off");
+        props.put("server.port", "0");
+        props.put("logging.level.root", "WARN");
+        props.put("catalog.upstream.base-url", "http://127.0.0.1:9/products");
+        props.putAll(overrides);
+        // As command line arguments, since default properties would lose to application.yml
+        String[] args = props.entrySet().stream().map(e -> "--" + e.getKey() + "=" + e.getValue()).toArray(String[]::new);
+        return new SpringApplicationBuilder(DemoApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .run(args);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.bench;
+
+import com.example.demo.product.*;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ProductService read paths against a seeded in-memory H2 catalog, with the in-memory
+ * read model switched off (every listing goes to the database) and on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ProductQueryBenchmark {
+
+    @Param({"1000", "100000"})
+    public int catalogSize;
+
+    @Param({"false", "true"})
+    public boolean readModel;
+
+    private ConfigurableApplicationContext context;
+    private ProductService service;
+    private long id;
+
+    private static final PageRequest NEWEST = PageRequest.of(0, 12, Sort.by("createdAt").descending());
+    private static final PageRequest DEEP = PageRequest.of(40, 12, Sort.by("price").ascending());
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = Fixtures.context(Map.of("catalog.read-model.enabled", String.valueOf(readModel)));
+        ProductSyncService sync = context.getBean(ProductSyncService.class);
+        List<FakeStoreProduct> feed = Fixtures.feed(catalogSize);
+        int chunk = 10_000;
+        for (int from = 0; from < feed.size(); from += chunk) {
+            int to = Math.min(from + chunk, feed.size());
+            // Publish once at the end so the read model is built a single time
+            sync.upsertBatch(null, feed.subList(from, to), Product.Source.UPSTREAM, to == feed.size());
+        }
+        service = context.getBean(ProductService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<ProductDto> listNewest() {
+        return service.list(null, null, null, null, NEWEST, false);
+    }
+
+    @Benchmark
+    public Page<ProductDto> listByCategory() {
+        return service.list(Fixtures.category(7), null, null, null, NEWEST, false);
+    }
+
+    @Benchmark
+    public Page<ProductDto> listSearch() {
+        return service.list(null, "phone", null, null, NEWEST, false);
+    }
+
+    @Benchmark
+    public Page<ProductDto> listDeepPage() {
+        return service.list(null, null, null, null, DEEP, false);
+    }
+
+    @Benchmark
+    public ProductSlice scrollFirstPage() {
+        return service.scroll(null, null, null, null, "createdAt", "desc", null, 12);
+    }
+
+    @Benchmark
+    public ProductDto findById() {
+        id = id % catalogSize + 1;
+        return service.find(id);
+    }
+}
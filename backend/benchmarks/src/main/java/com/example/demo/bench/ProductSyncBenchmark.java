@@ -0,0 +1,75 @@
+package com.example.demo.bench;
+
+import com.example.demo.product.FakeStoreProduct;
+import com.example.demo.product.Product;
+import com.example.demo.product.ProductSyncService;
+import com.example.demo.product.SyncResult;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a feed into H2: the per-item upsertOne loop against one batched upsert.
+ * The catalog is loaded during setup. The upsert benchmarks alternate between two feeds whose
+ * prices differ, so every item is an update; upsertBatchUnchanged resyncs the feed already stored,
+ * where every item matches its content hash and nothing is written.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductSyncBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int feedSize;
+
+    private ConfigurableApplicationContext context;
+    private ProductSyncService sync;
+    private List<FakeStoreProduct> feed;
+    private List<FakeStoreProduct> repriced;
+    private int invocation;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = Fixtures.context(Map.of());
+        sync = context.getBean(ProductSyncService.class);
+        feed = Fixtures.feed(feedSize);
+        repriced = feed.stream()
+                .map(s -> new FakeStoreProduct(s.id(), s.title(), s.price().add(BigDecimal.ONE), s.description(), s.category(), s.image()))
+                .toList();
+        sync.upsertBatch(null, feed, Product.Source.UPSTREAM, false);
+    }
+
+    private List<FakeStoreProduct> nextFeed() {
+        return (invocation++ & 1) == 0 ? repriced : feed;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int upsertOneLoop() {
+        int n = 0;
+        for (FakeStoreProduct s : nextFeed()) n += sync.upsertOne(s) != ProductSyncService.Upsert.UNCHANGED ? 1 : 0;
+        return n;
+    }
+
+    @Benchmark
+    public SyncResult upsertBatch() {
+        return sync.upsertBatch(null, nextFeed(), Product.Source.UPSTREAM, false);
+    }
+
+    // Each benchmark gets its own trial setup, so the stored catalog is still the original feed
+    @Benchmark
+    public SyncResult upsertBatchUnchanged() {
+        return sync.upsertBatch(null, feed, Product.Source.UPSTREAM, false);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.load;
+
+import com.example.demo.bench.Fixtures;
+import com.example.demo.product.FakeStoreProduct;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local stand-in for fakestoreapi.com: serves /products, /products/category/{name} and
+ * /products/{id} from a synthetic catalog, with a fixed added latency and ETag / 304 support.
+ */
+public final class FakeStoreStub implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<Long, FakeStoreProduct> byId = new HashMap<>();
+    private final Map<String, List<FakeStoreProduct>> byCategory = new HashMap<>();
+    private final List<FakeStoreProduct> all;
+    private final long latencyMillis;
+    private final ObjectMapper mapper = new ObjectMapper();
+    // Serialized list bodies per path, computed once
+    private final Map<String, byte[]> bodies = new ConcurrentHashMap<>();
+
+    private FakeStoreStub(int catalogSize, long latencyMillis) throws IOException {
+        this.all = Fixtures.feed(catalogSize);
+        this.latencyMillis = latencyMillis;
+        for (FakeStoreProduct p : all) {
+            byId.put(p.id(), p);
+            byCategory.computeIfAbsent(p.category(), k -> new ArrayList<>()).add(p);
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/products", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public static FakeStoreStub start(int catalogSize, long latencyMillis) throws IOException {
+        return new FakeStoreStub(catalogSize, latencyMillis);
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/products";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (latencyMillis > 0) Thread.sleep(latencyMillis);
+            String path = URLDecoder.decode(exchange.getRequestURI().getRawPath(), StandardCharsets.UTF_8);
+            byte[] body = body(path);
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            String etag = "\"" + Integer.toHexString(Arrays.hashCode(body)) + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private byte[] body(String path) throws IOException {
+        if (path.equals("/products") || path.equals("/products/")) {
+            return bodies.computeIfAbsent(path, k -> write(all));
+        }
+        if (path.startsWith("/products/category/")) {
+            List<FakeStoreProduct> items = byCategory.get(path.substring("/products/category/".length()));
+            return items == null ? write(List.of()) : bodies.computeIfAbsent(path, k -> write(items));
+        }
+        try {
+            FakeStoreProduct p = byId.get(Long.parseLong(path.substring("/products/".length())));
+            return p == null ? null : mapper.writeValueAsBytes(p);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private byte[] write(Object value) {
+        try {
+            return mapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.demo.load;
+
+import com.example.demo.bench.Fixtures;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load test: boots the application on a private H2 database against a local
+ * {@link FakeStoreStub}, syncs the catalog, then fires a weighted mix of product and cart
+ * requests at a fixed arrival rate. Latency is measured from each request's scheduled start,
+ * so a stalled server shows up in the percentiles instead of silently lowering the rate.
+ * Prints p50/p99/p999 and throughput per endpoint and writes them as JSON.
+ *
+ * Options (all --key=value): catalog, upstream-latency-ms, rate, warmup-seconds,
+ * duration-seconds, sessions, mix (e.g. list:40,search:15,detail:20,cart-get:10,cart-add:10,cart-patch:5),
+ * out, and app.* which is passed to the application with the prefix stripped.
+ */
+public final class LoadTest {
+
+    private static final String DEFAULT_MIX = "list:40,search:15,detail:20,cart-get:10,cart-add:10,cart-patch:5";
+    private static final String[] SEARCH_TERMS = {"phone", "cotton", "ring", "laptop", "wire", "classic"};
+    private static final long HIGHEST_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final URI base;
+    private final HttpClient http;
+    private final List<Endpoint> mix = new ArrayList<>();
+    private final int totalWeight;
+    private final String[] sessions;
+    private List<Long> productIds = List.of();
+
+    private LoadTest(URI base, String mix, int sessions) {
+        this.base = base;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        int weight = 0;
+        for (String entry : mix.split(",")) {
+            String[] kv = entry.trim().split(":");
+            Endpoint e = new Endpoint(kv[0], Integer.parseInt(kv[1]));
+            this.mix.add(e);
+            weight += e.weight;
+        }
+        this.totalWeight = weight;
+        this.sessions = new String[sessions];
+        for (int i = 0; i < sessions; i++) this.sessions[i] = UUID.randomUUID().toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) throw new IllegalArgumentException("Expected --key=value, got " + arg);
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        int catalog = Integer.parseInt(options.getOrDefault("catalog", "1000"));
+        long upstreamLatency = Long.parseLong(options.getOrDefault("upstream-latency-ms", "50"));
+        int rate = Integer.parseInt(options.getOrDefault("rate", "200"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup-seconds", "10"));
+        int duration = Integer.parseInt(options.getOrDefault("duration-seconds", "30"));
+        int sessions = Integer.parseInt(options.getOrDefault("sessions", "500"));
+        String mix = options.getOrDefault("mix", DEFAULT_MIX);
+        File out = new File(options.getOrDefault("out", "target/load-result.json"));
+
+        try (FakeStoreStub stub = FakeStoreStub.start(catalog, upstreamLatency)) {
+            Map<String, Object> overrides = new HashMap<>();
+            overrides.put("catalog.upstream.base-url", stub.baseUrl());
+            options.forEach((k, v) -> {
+                if (k.startsWith("app.")) overrides.put(k.substring(4), v);
+            });
+            ConfigurableApplicationContext app = Fixtures.context(overrides);
+            try {
+                String port = app.getEnvironment().getProperty("local.server.port");
+                LoadTest test = new LoadTest(URI.create("http://127.0.0.1:" + port), mix, sessions);
+                test.prepare();
+                System.out.printf("Warming up for %ds at %d req/s%n", warmup, rate);
+                test.run(rate, warmup);
+                test.reset();
+                System.out.printf("Measuring for %ds at %d req/s%n", duration, rate);
+                long elapsed = test.run(rate, duration);
+                test.report(options, elapsed, out);
+            } finally {
+                app.close();
+            }
+        }
+    }
+
+    // Loads the catalog through the sync endpoint and collects product ids to use in requests
+    private void prepare() throws Exception {
+        HttpResponse<String> sync = http.send(HttpRequest.newBuilder(base.resolve("/api/sync/products"))
+                .POST(HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.ofString());
+        System.out.println(sync.body());
+        HttpResponse<String> page = http.send(HttpRequest.newBuilder(base.resolve("/api/products?size=1000&sortBy=id"))
+                .GET().build(), HttpResponse.BodyHandlers.ofString());
+        List<Long> ids = new ArrayList<>();
+        for (JsonNode p : new ObjectMapper().readTree(page.body()).path("content")) ids.add(p.path("id").asLong());
+        if (ids.isEmpty()) throw new IllegalStateException("Catalog is empty after sync");
+        productIds = ids;
+    }
+
+    /** Issues requests on a fixed schedule for the given time; returns the measured wall time in nanos. */
+    private long run(int rate, int seconds) {
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        Phaser inFlight = new Phaser(1);
+        for (long i = 0; ; i++) {
+            long scheduled = start + i * interval;
+            if (scheduled >= end) break;
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            Endpoint endpoint = pick();
+            HttpRequest request = endpoint.request();
+            inFlight.register();
+            http.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+                endpoint.record(System.nanoTime() - scheduled, error == null && response.statusCode() < 400);
+                inFlight.arriveAndDeregister();
+            });
+        }
+        try {
+            inFlight.awaitAdvanceInterruptibly(inFlight.arrive(), 60, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            System.out.println("Gave up waiting for in-flight requests: " + e);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private Endpoint pick() {
+        int r = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Endpoint e : mix) {
+            r -= e.weight;
+            if (r < 0) return e;
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    private void reset() {
+        mix.forEach(Endpoint::reset);
+    }
+
+    private void report(Map<String, String> options, long elapsedNanos, File out) throws Exception {
+        double seconds = elapsedNanos / 1e9;
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        System.out.printf("%n%-12s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Endpoint e : mix) {
+            Histogram h = e.latency;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("requests", h.getTotalCount());
+            row.put("errors", e.errors.get());
+            row.put("throughput", h.getTotalCount() / seconds);
+            row.put("p50Millis", millis(h.getValueAtPercentile(50)));
+            row.put("p90Millis", millis(h.getValueAtPercentile(90)));
+            row.put("p99Millis", millis(h.getValueAtPercentile(99)));
+            row.put("p999Millis", millis(h.getValueAtPercentile(99.9)));
+            row.put("maxMillis", millis(h.getMaxValue()));
+            endpoints.put(e.name, row);
+            System.out.printf("%-12s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", e.name, h.getTotalCount(), e.errors.get(),
+                    h.getTotalCount() / seconds, millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(99)),
+                    millis(h.getValueAtPercentile(99.9)), millis(h.getMaxValue()));
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("options", options);
+        result.put("elapsedSeconds", seconds);
+        result.put("endpoints", endpoints);
+        File dir = out.getAbsoluteFile().getParentFile();
+        if (dir != null) dir.mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(out, result);
+        System.out.println("Results written to " + out.getAbsolutePath());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private final class Endpoint {
+        final String name;
+        final int weight;
+        final Histogram latency = new ConcurrentHistogram(HIGHEST_NANOS, 3);
+        final AtomicLong errors = new AtomicLong();
+
+        Endpoint(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        HttpRequest request() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long id = productIds.get(random.nextInt(productIds.size()));
+            String session = sessions[random.nextInt(sessions.length)];
+            return switch (name) {
+                case "list" -> get("/api/products?page=" + random.nextInt(5)
+                        + (random.nextBoolean() ? "&category=" + Fixtures.category(random.nextInt(Fixtures.CATEGORIES)) : ""));
+                case "search" -> get("/api/products?q=" + SEARCH_TERMS[random.nextInt(SEARCH_TERMS.length)]);
+                case "detail" -> get("/api/products/" + id);
+                case "cart-get" -> cart(session).GET().build();
+                case "cart-add" -> json(cart(session, "/items"), "POST", "{\"productId\":" + id + ",\"quantity\":1}");
+                case "cart-patch" -> json(cart(session, ""), "PATCH",
+                        "{\"operations\":[{\"op\":\"SET\",\"productId\":" + id + ",\"quantity\":" + (1 + random.nextInt(3)) + "}]}");
+                default -> throw new IllegalArgumentException("Unknown endpoint in mix: " + name);
+            };
+        }
+
+        void record(long nanos, boolean ok) {
+            latency.recordValue(Math.min(nanos, HIGHEST_NANOS));
+            if (!ok) errors.incrementAndGet();
+        }
+
+        void reset() {
+            latency.reset();
+            errors.set(0);
+        }
+
+        private HttpRequest get(String path) {
+            return HttpRequest.newBuilder(base.resolve(path)).timeout(Duration.ofSeconds(30)).GET().build();
+        }
+
+        private HttpRequest.Builder cart(String session) {
+            return cart(session, "");
+        }
+
+        private HttpRequest.Builder cart(String session, String suffix) {
+            return HttpRequest.newBuilder(base.resolve("/api/cart" + suffix))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Cookie", "CART_SESSION_ID=" + session);
+        }
+
+        private HttpRequest json(HttpRequest.Builder builder, String method, String body) {
+            return builder.header("Content-Type", "application/json")
+                    .method(method, HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }
+    }
+}
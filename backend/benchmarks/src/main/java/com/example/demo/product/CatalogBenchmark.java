@@ -0,0 +1,98 @@
+package com.example.demo.product;
+
+import com.example.demo.bench.Fixtures;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory catalog paths: entity to DTO mapping, the columnar read model and the search index,
+ * over synthetic catalogs. Lives in the product package to reach package-private members.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CatalogBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    private List<Product> products;
+    private CatalogReadModel readModel;
+    private ProductSearchIndex searchIndex;
+    private List<Long> phoneHits;
+    private int cursor;
+
+    private static final PageRequest NEWEST = PageRequest.of(0, 12, Sort.by("createdAt").descending());
+    private static final PageRequest BY_PRICE_DEEP = PageRequest.of(50, 12, Sort.by("price").ascending());
+    private static final PageRequest BY_RELEVANCE = PageRequest.of(0, 12, Sort.by(ProductService.RELEVANCE));
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        products = Fixtures.products(catalogSize);
+        ProductRepository repo = listingOnly(products);
+        readModel = new CatalogReadModel(repo, true);
+        readModel.rebuild();
+        searchIndex = new ProductSearchIndex(repo, true, 1000, 5000);
+        for (Product p : products) searchIndex.index(p.getId(), p.getName(), p.getDescription());
+        phoneHits = searchIndex.search("phone");
+    }
+
+    @Benchmark
+    public ProductDto toDto() {
+        Product p = products.get(cursor++ % products.size());
+        return ProductService.toDto(p);
+    }
+
+    @Benchmark
+    public Optional<Page<ProductDto>> readModelNewestPage() {
+        return readModel.query(null, null, null, null, NEWEST);
+    }
+
+    @Benchmark
+    public Optional<Page<ProductDto>> readModelCategoryAndPrice() {
+        return readModel.query(Fixtures.category(3), null, new BigDecimal("100"), new BigDecimal("500"), NEWEST);
+    }
+
+    @Benchmark
+    public Optional<Page<ProductDto>> readModelDeepPriceSort() {
+        return readModel.query(null, null, null, null, BY_PRICE_DEEP);
+    }
+
+    @Benchmark
+    public Optional<Page<ProductDto>> readModelNameSubstring() {
+        return readModel.query(null, "phone", null, null, NEWEST);
+    }
+
+    @Benchmark
+    public void searchIndexQuery(Blackhole bh) {
+        bh.consume(searchIndex.search("phone"));
+        bh.consume(searchIndex.search("wire"));
+    }
+
+    @Benchmark
+    public Optional<Page<ProductDto>> readModelSearchHitsByRelevance() {
+        return readModel.queryHits(null, phoneHits, null, null, BY_RELEVANCE);
+    }
+
+    // Repository stand-in that only serves the full-catalog reads the in-memory structures load from
+    private static ProductRepository listingOnly(List<Product> products) {
+        return (ProductRepository) Proxy.newProxyInstance(ProductRepository.class.getClassLoader(),
+                new Class<?>[]{ProductRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findAllWithCategory", "findAll" -> products;
+                    case "toString" -> "ProductRepository(fixture)";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
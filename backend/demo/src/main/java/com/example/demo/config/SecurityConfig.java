@@ -1,5 +1,8 @@
 package com.example.demo.config;
 
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.info.InfoEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
@@ -15,6 +18,9 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.ignoringRequestMatchers("/h2-console/**").disable())
                 .headers(headers -> headers.frameOptions(frame -> frame.sameOrigin()))
                 .authorizeHttpRequests(auth -> auth
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class, InfoEndpoint.class)).permitAll()
+                        // metrics and prometheus expose traffic, SQL and cache internals; scrapers use basic auth
+                        .requestMatchers(EndpointRequest.toAnyEndpoint()).hasRole("ACTUATOR")
                         .requestMatchers("/h2-console/**").permitAll()
                         .requestMatchers("/api/products/**").permitAll()
                         .anyRequest().permitAll()
@@ -0,0 +1,52 @@
+package com.example.demo.config;
+
+/**
+ * SQL work done on behalf of the current request: statements executed, time spent executing
+ * them and rows read from their result sets. Bound to the request thread by SqlCostFilter and
+ * fed by SqlCostDataSource; work on other threads (background syncs, write-behind flushes)
+ * is not attributed to any request.
+ */
+public final class SqlCost {
+
+    private static final ThreadLocal<SqlCost> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long nanos;
+    private long rows;
+
+    static SqlCost begin() {
+        SqlCost cost = new SqlCost();
+        CURRENT.set(cost);
+        return cost;
+    }
+
+    static void end() {
+        CURRENT.remove();
+    }
+
+    /** The accumulator for this thread's request, or null outside an instrumented request. */
+    static SqlCost current() {
+        return CURRENT.get();
+    }
+
+    void statement(long elapsedNanos) {
+        statements++;
+        nanos += elapsedNanos;
+    }
+
+    void row() {
+        rows++;
+    }
+
+    public int statements() {
+        return statements;
+    }
+
+    public double millis() {
+        return nanos / 1_000_000.0;
+    }
+
+    public long rows() {
+        return rows;
+    }
+}
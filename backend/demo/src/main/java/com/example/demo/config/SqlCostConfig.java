@@ -0,0 +1,25 @@
+package com.example.demo.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+@ConditionalOnProperty(name = "sql-cost.enabled", havingValue = "true")
+public class SqlCostConfig {
+
+    // Static so the post-processor is registered without instantiating this configuration early
+    @Bean
+    static BeanPostProcessor sqlCostDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource ds && !(bean instanceof SqlCostDataSource)) return new SqlCostDataSource(ds);
+                return bean;
+            }
+        };
+    }
+}
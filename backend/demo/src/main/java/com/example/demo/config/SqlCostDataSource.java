@@ -0,0 +1,91 @@
+package com.example.demo.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+
+/**
+ * Wraps the pool so every statement, whether issued by Hibernate or JdbcTemplate, is timed and
+ * its result-set rows counted into the current request's SqlCost. Connections, statements and
+ * result sets are thin JDK proxies that only record while a request is being accounted.
+ */
+public class SqlCostDataSource extends DelegatingDataSource {
+
+    public SqlCostDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(Connection.class, new ConnectionHandler(super.getConnection()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(Connection.class, new ConnectionHandler(super.getConnection(username, password)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T wrap(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SqlCostDataSource.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private record ConnectionHandler(Connection target) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = SqlCostDataSource.invoke(target, method, args);
+            // Statement types are interfaces, so the declared return type is the one to proxy
+            if (result instanceof Statement statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                return wrap(method.getReturnType(), new StatementHandler(statement));
+            }
+            return result;
+        }
+    }
+
+    private record StatementHandler(Statement target) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            SqlCost cost = SqlCost.current();
+            String name = method.getName();
+            if (cost == null) return SqlCostDataSource.invoke(target, method, args);
+
+            Object result;
+            if (name.startsWith("execute")) {
+                long start = System.nanoTime();
+                try {
+                    result = SqlCostDataSource.invoke(target, method, args);
+                } finally {
+                    cost.statement(System.nanoTime() - start);
+                }
+            } else {
+                result = SqlCostDataSource.invoke(target, method, args);
+            }
+            if (result instanceof ResultSet rs && (name.equals("executeQuery") || name.equals("getResultSet"))) {
+                return wrap(ResultSet.class, new ResultSetHandler(rs, cost));
+            }
+            return result;
+        }
+    }
+
+    private record ResultSetHandler(ResultSet target, SqlCost cost) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = SqlCostDataSource.invoke(target, method, args);
+            if (Boolean.TRUE.equals(result) && method.getName().equals("next")) cost.row();
+            return result;
+        }
+    }
+}
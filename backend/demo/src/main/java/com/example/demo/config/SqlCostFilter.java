@@ -0,0 +1,96 @@
+package com.example.demo.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.web.util.OnCommittedResponseWrapper;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Accounts the SQL run by each catalog, cart and sync API request and reports it as
+ *   Server-Timing: sql;dur=12.41;desc="7 statements, 42 rows", app;dur=30.02
+ * which browser dev tools show next to the request. Requests at or above sql-cost.log-statements
+ * statements or sql-cost.log-millis of SQL time are also logged, to spot N+1 patterns in logs.
+ * The header is added when the response commits, so SQL run while the body streams is not included.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 10)
+@ConditionalOnProperty(name = "sql-cost.enabled", havingValue = "true")
+public class SqlCostFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlCostFilter.class);
+    private static final String[] PATHS = {"/api/products", "/api/cart", "/api/sync"};
+
+    private final int logStatements;
+    private final long logMillis;
+
+    public SqlCostFilter(@Value("${sql-cost.log-statements:20}") int logStatements,
+                         @Value("${sql-cost.log-millis:200}") long logMillis) {
+        this.logStatements = logStatements;
+        this.logMillis = logMillis;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String prefix : PATHS) {
+            if (path.equals(prefix) || path.startsWith(prefix + "/")) return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        SqlCost cost = SqlCost.begin();
+        ServerTimingResponse wrapped = new ServerTimingResponse(response, cost, start);
+        try {
+            chain.doFilter(request, wrapped);
+        } finally {
+            wrapped.addHeader();
+            SqlCost.end();
+            if ((logStatements > 0 && cost.statements() >= logStatements) || (logMillis > 0 && cost.millis() >= logMillis)) {
+                log.info("{} {} ran {} SQL statements in {} ms, {} rows", request.getMethod(), request.getRequestURI(),
+                        cost.statements(), String.format(Locale.ROOT, "%.1f", cost.millis()), cost.rows());
+            }
+        }
+    }
+
+    // Spring Security's wrapper tells us just before the first byte goes out, while headers can still be set
+    private static final class ServerTimingResponse extends OnCommittedResponseWrapper {
+        private final SqlCost cost;
+        private final long start;
+        private boolean added;
+
+        ServerTimingResponse(HttpServletResponse response, SqlCost cost, long start) {
+            super(response);
+            this.cost = cost;
+            this.start = start;
+        }
+
+        @Override
+        protected void onResponseCommitted() {
+            addHeader();
+        }
+
+        void addHeader() {
+            if (added || isCommitted()) return;
+            added = true;
+            double appMillis = (System.nanoTime() - start) / 1_000_000.0;
+            setHeader("Server-Timing", String.format(Locale.ROOT, "sql;dur=%.2f;desc=\"%d statements, %d rows\", app;dur=%.2f",
+                    cost.millis(), cost.statements(), cost.rows(), appMillis));
+        }
+    }
+}
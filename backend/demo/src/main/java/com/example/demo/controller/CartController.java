@@ -1,8 +1,9 @@
 package com.example.demo.controller;
 
 import com.example.demo.dto.AddToCartRequest;
+import com.example.demo.dto.CartBatchRequest;
 import com.example.demo.dto.CartResponse;
-import com.example.demo.service.CartService;
+import com.example.demo.service.CartStore;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -17,7 +18,7 @@ import org.springframework.web.bind.annotation.*;
 public class CartController {
 
     @Autowired
-    private CartService cartService;
+    private CartStore cartService;
 
     @GetMapping
     public ResponseEntity<CartResponse> getCart(HttpServletRequest request, HttpServletResponse response) {
@@ -57,6 +58,17 @@ public class CartController {
         return ResponseEntity.ok(cart);
     }
 
+    // Several add/set/remove operations in one round trip, applied all-or-nothing
+    @PatchMapping
+    public ResponseEntity<CartResponse> applyBatch(
+            @Valid @RequestBody CartBatchRequest batchRequest,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        String sessionId = getOrCreateSessionId(request, response);
+        CartResponse cart = cartService.applyBatch(sessionId, batchRequest.getOperations());
+        return ResponseEntity.ok(cart);
+    }
+
     @DeleteMapping
     public ResponseEntity<Void> clearCart(HttpServletRequest request, HttpServletResponse response) {
         String sessionId = getOrCreateSessionId(request, response);
@@ -0,0 +1,25 @@
+package com.example.demo.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CartBatchRequest {
+    @NotEmpty(message = "At least one operation is required")
+    @Size(max = 200, message = "At most 200 operations per request")
+    private List<@Valid CartOperationRequest> operations = new ArrayList<>();
+
+    // Constructors
+    public CartBatchRequest() {}
+
+    public CartBatchRequest(List<CartOperationRequest> operations) {
+        this.operations = operations;
+    }
+
+    // Getters and Setters
+    public List<CartOperationRequest> getOperations() { return operations; }
+    public void setOperations(List<CartOperationRequest> operations) { this.operations = operations; }
+}
@@ -1,7 +1,7 @@
 package com.example.demo.dto;
 
 import com.example.demo.entity.CartItem;
-import com.example.demo.product.Product;
+import com.example.demo.product.Money;
 import java.math.BigDecimal;
 
 public class CartItemResponse {
@@ -15,15 +15,26 @@ public class CartItemResponse {
 
     public CartItemResponse() {}
 
+    public CartItemResponse(Long id, Long productId, String productName, String productImageUrl,
+                            BigDecimal productPrice, int quantity) {
+        this.id = id;
+        this.productId = productId;
+        this.productName = productName;
+        this.productImageUrl = productImageUrl;
+        this.productPrice = productPrice;
+        this.quantity = quantity;
+        this.subtotal = productPrice.multiply(BigDecimal.valueOf(quantity));
+    }
+
     public CartItemResponse(CartItem cartItem) {
+        // Built from the line's snapshot only; the product itself is never loaded
         this.id = cartItem.getId();
-        Product product = cartItem.getProduct();
-        this.productId = product.getId();
-        this.productName = product.getName();
-        this.productImageUrl = product.getImageUrl();
-        this.productPrice = product.getPrice(); // BigDecimal from entity
+        this.productId = cartItem.getProductId();
+        this.productName = cartItem.getProductName();
+        this.productImageUrl = cartItem.getProductImageUrl();
+        this.productPrice = Money.fromCents(cartItem.getUnitPriceCents());
         this.quantity = cartItem.getQuantity();
-        this.subtotal = product.getPrice().multiply(BigDecimal.valueOf(this.quantity));
+        this.subtotal = cartItem.getSubtotal();
     }
 
     // Getters and Setters
@@ -0,0 +1,42 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * One step of a PATCH /api/cart batch.
+ * ADD increases the quantity (adding the line if needed), SET replaces it (0 removes the line),
+ * REMOVE drops the line if present.
+ */
+public class CartOperationRequest {
+
+    public enum Type { ADD, SET, REMOVE }
+
+    @NotNull(message = "Operation type is required")
+    private Type op;
+
+    @NotNull(message = "Product ID is required")
+    private Long productId;
+
+    @Min(value = 0, message = "Quantity must not be negative")
+    private int quantity;
+
+    // Constructors
+    public CartOperationRequest() {}
+
+    public CartOperationRequest(Type op, Long productId, int quantity) {
+        this.op = op;
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    // Getters and Setters
+    public Type getOp() { return op; }
+    public void setOp(Type op) { this.op = op; }
+
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+
+    public int getQuantity() { return quantity; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+}
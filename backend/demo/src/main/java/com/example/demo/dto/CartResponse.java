@@ -2,6 +2,7 @@ package com.example.demo.dto;
 
 import com.example.demo.entity.Cart;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -9,12 +10,20 @@ public class CartResponse {
     private Long id;
     private String sessionId;
     private List<CartItemResponse> items;
-    private double totalAmount;
+    private BigDecimal totalAmount;
     private int totalItems;
 
     // Constructors
     public CartResponse() {}
 
+    public CartResponse(Long id, String sessionId, List<CartItemResponse> items) {
+        this.id = id;
+        this.sessionId = sessionId;
+        this.items = items;
+        this.totalAmount = items.stream().map(CartItemResponse::getSubtotal).reduce(BigDecimal.ZERO, BigDecimal::add);
+        this.totalItems = items.stream().mapToInt(CartItemResponse::getQuantity).sum();
+    }
+
     public CartResponse(Cart cart) {
         this.id = cart.getId();
         this.sessionId = cart.getSessionId();
@@ -35,8 +44,8 @@ public class CartResponse {
     public List<CartItemResponse> getItems() { return items; }
     public void setItems(List<CartItemResponse> items) { this.items = items; }
 
-    public double getTotalAmount() { return totalAmount; }
-    public void setTotalAmount(double totalAmount) { this.totalAmount = totalAmount; }
+    public BigDecimal getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(BigDecimal totalAmount) { this.totalAmount = totalAmount; }
 
     public int getTotalItems() { return totalItems; }
     public void setTotalItems(int totalItems) { this.totalItems = totalItems; }
@@ -1,5 +1,6 @@
 package com.example.demo.entity;
 
+import com.example.demo.product.Money;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -7,7 +8,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "carts")
+// updated_at is indexed for the idle-cart reaper
+@Table(name = "carts", indexes = @Index(name = "idx_carts_updated_at", columnList = "updated_at"))
 public class Cart {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -25,6 +27,19 @@ public class Cart {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Running totals kept in step with every mutation, so reads never sum over products.
+    // Null on carts written before the columns existed; recomputed from the lines on first use.
+    @Column(name = "total_amount_cents")
+    private Long totalAmountCents = 0L;
+
+    @Column(name = "total_items")
+    private Integer totalItems = 0;
+
+    // inventory.instance-id of the instance that last changed the lines and so holds their stock;
+    // only that instance restores the holds after a restart
+    @Column(name = "held_by", length = 64)
+    private String heldBy;
+
     // Constructors
     public Cart() {
         this.createdAt = LocalDateTime.now();
@@ -52,29 +67,78 @@ public class Cart {
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
 
+    public String getHeldBy() { return heldBy; }
+    public void setHeldBy(String heldBy) { this.heldBy = heldBy; }
+
     // Helper methods
     public void addItem(CartItem item) {
         items.add(item);
         item.setCart(this);
-        this.updatedAt = LocalDateTime.now();
+        adjustTotals(item.getLineTotalCents(), item.getQuantity());
     }
 
     public void removeItem(CartItem item) {
-        items.remove(item);
+        if (items.remove(item)) adjustTotals(-item.getLineTotalCents(), -item.getQuantity());
         item.setCart(null);
+    }
+
+    public void changeQuantity(CartItem item, int quantity) {
+        int delta = quantity - item.getQuantity();
+        item.setQuantity(quantity);
+        adjustTotals(item.getUnitPriceCents() * delta, delta);
+    }
+
+    public void clearItems() {
+        items.clear();
+        totalAmountCents = 0L;
+        totalItems = 0;
         this.updatedAt = LocalDateTime.now();
     }
 
-    public double getTotalAmount() {
-        return items.stream()
-                .mapToDouble(item -> item.getProduct().getPrice().multiply(
-                        BigDecimal.valueOf(item.getQuantity())).doubleValue())
-                .sum();
+    // Fills snapshots and totals missing on legacy rows; touches the product only for those lines
+    public void ensureSnapshots() {
+        boolean stale = totalAmountCents == null || totalItems == null;
+        for (CartItem item : items) {
+            if (!item.hasSnapshot()) {
+                item.snapshot(item.getProduct());
+                stale = true;
+            }
+        }
+        if (stale) recalculateTotals();
+    }
+
+    public void recalculateTotals() {
+        long amount = 0;
+        int count = 0;
+        for (CartItem item : items) {
+            amount += item.getLineTotalCents();
+            count += item.getQuantity();
+        }
+        totalAmountCents = amount;
+        totalItems = count;
+    }
+
+    private void adjustTotals(long amountCents, int count) {
+        if (totalAmountCents == null || totalItems == null) {
+            recalculateTotals();
+        } else {
+            totalAmountCents += amountCents;
+            totalItems += count;
+        }
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public long getTotalAmountCents() {
+        if (totalAmountCents == null) recalculateTotals();
+        return totalAmountCents;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return Money.fromCents(getTotalAmountCents());
     }
 
     public int getTotalItems() {
-        return items.stream()
-                .mapToInt(CartItem::getQuantity)
-                .sum();
+        if (totalItems == null) recalculateTotals();
+        return totalItems;
     }
 }
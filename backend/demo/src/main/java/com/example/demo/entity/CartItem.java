@@ -1,5 +1,6 @@
 package com.example.demo.entity;
 
+import com.example.demo.product.Money;
 import com.example.demo.product.Product;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
@@ -15,20 +16,48 @@ public class CartItem {
     @JoinColumn(name = "cart_id", nullable = false)
     private Cart cart;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
     private Product product;
 
+    // Read-only copy of the foreign key, so reads never touch the product proxy
+    @Column(name = "product_id", insertable = false, updatable = false)
+    private Long productId;
+
     @Column(nullable = false)
     private int quantity;
 
+    // Snapshot of the product taken when the line was added; null on rows written before snapshots existed
+    @Column(name = "unit_price_cents")
+    private Long unitPriceCents;
+
+    @Column(name = "product_name")
+    private String productName;
+
+    @Column(name = "product_image_url")
+    private String productImageUrl;
+
     // Constructors
     public CartItem() {}
 
     public CartItem(Cart cart, Product product, int quantity) {
         this.cart = cart;
         this.product = product;
+        this.productId = product.getId();
+        this.quantity = quantity;
+        snapshot(product);
+    }
+
+    // For callers that already hold the snapshot and only have a product reference
+    public CartItem(Cart cart, Product product, int quantity,
+                    long unitPriceCents, String productName, String productImageUrl) {
+        this.cart = cart;
+        this.product = product;
+        this.productId = product.getId();
         this.quantity = quantity;
+        this.unitPriceCents = unitPriceCents;
+        this.productName = productName;
+        this.productImageUrl = productImageUrl;
     }
 
     // Getters and Setters
@@ -39,12 +68,35 @@ public class CartItem {
     public void setCart(Cart cart) { this.cart = cart; }
 
     public Product getProduct() { return product; }
-    public void setProduct(Product product) { this.product = product; }
+    public void setProduct(Product product) {
+        this.product = product;
+        this.productId = product != null ? product.getId() : null;
+    }
+
+    public Long getProductId() { return productId; }
 
     public int getQuantity() { return quantity; }
     public void setQuantity(int quantity) { this.quantity = quantity; }
 
-    public double getSubtotal() {
-        return product.getPrice().multiply(BigDecimal.valueOf(quantity)).doubleValue();
+    public Long getUnitPriceCents() { return unitPriceCents; }
+    public String getProductName() { return productName; }
+    public String getProductImageUrl() { return productImageUrl; }
+
+    public void snapshot(Product product) {
+        this.unitPriceCents = Money.toCents(product.getPrice());
+        this.productName = product.getName();
+        this.productImageUrl = product.getImageUrl();
+    }
+
+    public boolean hasSnapshot() {
+        return unitPriceCents != null;
+    }
+
+    public long getLineTotalCents() {
+        return unitPriceCents * quantity;
+    }
+
+    public BigDecimal getSubtotal() {
+        return Money.fromCents(getLineTotalCents());
     }
 }
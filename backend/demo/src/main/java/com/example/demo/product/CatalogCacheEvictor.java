@@ -0,0 +1,38 @@
+package com.example.demo.product;
+
+import com.example.demo.category.Category;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Clears the second-level cache regions for products and categories, and the query cache, once
+ * a sync commits. Bulk and partitioned syncs write with plain JDBC, which Hibernate never sees,
+ * so without this the cache would serve pre-sync rows until they expire. Runs before the other
+ * sync listeners so anything they load comes from the database.
+ */
+@Component
+public class CatalogCacheEvictor {
+
+    private final EntityManagerFactory emf;
+
+    public CatalogCacheEvictor(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogSynced(CatalogSyncedEvent event) {
+        evictAll();
+    }
+
+    public void evictAll() {
+        org.hibernate.Cache cache = emf.unwrap(SessionFactory.class).getCache();
+        cache.evictEntityData(Product.class);
+        cache.evictEntityData(Category.class);
+        cache.evictQueryRegions();
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.demo.product;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bulk import of local catalog files, for seeding environments and onboarding suppliers without
+ * going through the HTTP feed. Files are read with CatalogFileReader (memory-mapped, one record at
+ * a time) and written in chunks of catalog.sync.batch-size through ProductSyncService.upsertBatch,
+ * each chunk in one transaction together with the byte offset it ends at. Memory stays bounded by
+ * one chunk, and importing the same unchanged file again resumes after the last committed chunk.
+ * Only files under catalog.import.dir can be imported, and only one import runs at a time.
+ */
+@Component
+public class CatalogFileImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogFileImporter.class);
+
+    private final ProductSyncService sync;
+    private final ImportCheckpointRepository checkpoints;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate tx;
+    private final Path dir;
+    private final int chunkSize;
+    private final int windowBytes;
+    private final ExecutorService worker;
+
+    private volatile Import current;
+
+    public CatalogFileImporter(ProductSyncService sync, ImportCheckpointRepository checkpoints,
+                               ApplicationEventPublisher events, PlatformTransactionManager txManager,
+                               @Value("${catalog.import.dir:imports}") String dir,
+                               @Value("${catalog.sync.batch-size:500}") int chunkSize,
+                               @Value("${catalog.import.window-bytes:67108864}") int windowBytes) {
+        this.sync = sync;
+        this.checkpoints = checkpoints;
+        this.events = events;
+        this.tx = new TransactionTemplate(txManager);
+        this.dir = Path.of(dir).toAbsolutePath().normalize();
+        this.chunkSize = chunkSize;
+        this.windowBytes = windowBytes;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "catalog-import");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Starts importing file (relative to catalog.import.dir), or returns the import already running.
+     * format is ndjson or csv, by default taken from the extension. offset starts at that byte,
+     * which must be the start of a record, instead of resuming from the file's checkpoint.
+     */
+    public synchronized Import start(String file, String format, Long offset) {
+        Import running = current;
+        if (running != null && !running.completion.isDone()) return running;
+
+        Path path = resolve(file);
+        CatalogFileReader.Format f = format == null || format.isBlank()
+                ? CatalogFileReader.Format.of(path)
+                : parseFormat(format);
+        if (offset != null && offset < 0) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "offset must be >= 0");
+
+        Import created = new Import(UUID.randomUUID().toString(), dir.relativize(path).toString(), f);
+        current = created;
+        try {
+            worker.execute(() -> run(created, path, offset));
+        } catch (RejectedExecutionException e) {
+            created.finish("FAILED", e);
+        }
+        return created;
+    }
+
+    public Optional<ImportStatus> status() {
+        Import job = current;
+        return job == null ? Optional.empty() : Optional.of(job.status());
+    }
+
+    private Path resolve(String file) {
+        Path path = dir.resolve(file).normalize();
+        if (!path.startsWith(dir)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Import files must be under " + dir);
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No such import file: " + file);
+        }
+        return path;
+    }
+
+    private static CatalogFileReader.Format parseFormat(String format) {
+        try {
+            return CatalogFileReader.Format.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Import format must be ndjson or csv");
+        }
+    }
+
+    private void run(Import job, Path path, Long requestedOffset) {
+        Exception failure = null;
+        try {
+            String fileKey = path.toRealPath() + "|" + Files.size(path) + "|" + Files.getLastModifiedTime(path).toMillis();
+            ImportCheckpoint checkpoint = tx.execute(status -> prepareCheckpoint(job, fileKey, requestedOffset));
+            if (checkpoint == null) {
+                // This exact file was already imported completely
+                job.finish("UNCHANGED", null);
+                return;
+            }
+            job.checkpointId = checkpoint.getId();
+            job.committed = checkpoint.getCommittedOffset();
+            job.records = checkpoint.getRecords();
+
+            try (CatalogFileReader reader = new CatalogFileReader(path, job.format, checkpoint.getCommittedOffset(), windowBytes)) {
+                job.total = reader.size();
+                List<FakeStoreProduct> chunk = new ArrayList<>(chunkSize);
+                FakeStoreProduct next;
+                do {
+                    next = reader.next();
+                    if (next != null) chunk.add(next);
+                    if (chunk.size() >= chunkSize || next == null) {
+                        commit(job, checkpoint, chunk, reader.offset(), next == null);
+                        job.rejected = reader.rejected();
+                        chunk.clear();
+                    }
+                } while (next != null);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Import {} of {} failed after {} bytes", job.id, job.file, job.committed, e);
+            failCheckpoint(job, e);
+            failure = e;
+        }
+        // One event for the whole import, so derived views rebuild once
+        if (job.upserts > 0) events.publishEvent(new CatalogSyncedEvent(null, (int) Math.min(job.upserts, Integer.MAX_VALUE)));
+        job.finish(failure == null ? "DONE" : "FAILED", failure);
+    }
+
+    // The checkpoint to continue from; null if the file was already imported and no offset was asked for
+    private ImportCheckpoint prepareCheckpoint(Import job, String fileKey, Long requestedOffset) {
+        Optional<ImportCheckpoint> existing = checkpoints.findByFileKey(fileKey);
+        if (existing.isPresent() && requestedOffset == null) {
+            ImportCheckpoint c = existing.get();
+            if (c.getState() == ImportCheckpoint.State.DONE) return null;
+            job.resumedFrom = c.getImportId();
+            log.info("Resuming import {} of {} at byte {}", c.getImportId(), job.file, c.getCommittedOffset());
+            c.setState(ImportCheckpoint.State.RUNNING);
+            c.setError(null);
+            return c;
+        }
+        ImportCheckpoint c = existing.orElseGet(() -> new ImportCheckpoint(job.id, fileKey, 0));
+        c.setImportId(job.id);
+        c.setCommittedOffset(requestedOffset == null ? 0 : requestedOffset);
+        c.setRecords(0);
+        c.setState(ImportCheckpoint.State.RUNNING);
+        c.setError(null);
+        return checkpoints.save(c);
+    }
+
+    private void commit(Import job, ImportCheckpoint checkpoint, List<FakeStoreProduct> chunk, long end, boolean last) {
+        long records = job.records + chunk.size();
+        ImportCheckpoint.State state = last ? ImportCheckpoint.State.DONE : ImportCheckpoint.State.RUNNING;
+        SyncResult written = tx.execute(status -> {
+            SyncResult r = chunk.isEmpty() ? null : sync.upsertBatch(null, chunk, Product.Source.IMPORT, false);
+            checkpoints.updateProgress(checkpoint.getId(), end, records, state, null, Instant.now());
+            return r;
+        });
+        job.committed = end;
+        job.records = records;
+        if (written != null) job.upserts += written.upserts();
+    }
+
+    private void failCheckpoint(Import job, Exception e) {
+        Long checkpointId = job.checkpointId;
+        if (checkpointId == null) return;
+        String error = e.toString().length() <= 1000 ? e.toString() : e.toString().substring(0, 1000);
+        try {
+            tx.executeWithoutResult(status -> checkpoints.updateProgress(checkpointId, job.committed, job.records,
+                    ImportCheckpoint.State.FAILED, error, Instant.now()));
+        } catch (RuntimeException ignored) {
+            // The checkpoint still holds the last committed offset
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /** A running or finished import; completion yields the number of upserted products. */
+    public static final class Import {
+        private final String id;
+        private final String file;
+        private final CatalogFileReader.Format format;
+        private final Instant startedAt = Instant.now();
+        private final long startNanos = System.nanoTime();
+        private final CompletableFuture<Long> completion = new CompletableFuture<>();
+        private volatile String state = "RUNNING";
+        private volatile String resumedFrom;
+        private volatile Long checkpointId;
+        private volatile long total;
+        private volatile long committed;
+        private volatile long records;
+        private volatile long upserts;
+        private volatile int rejected;
+        private volatile Instant finishedAt;
+        private volatile long elapsedMillis = -1;
+        private volatile String error;
+
+        private Import(String id, String file, CatalogFileReader.Format format) {
+            this.id = id;
+            this.file = file;
+            this.format = format;
+        }
+
+        public CompletableFuture<Long> completion() {
+            return completion;
+        }
+
+        private void finish(String state, Throwable failure) {
+            this.elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+            this.finishedAt = Instant.now();
+            this.state = state;
+            if (failure != null) {
+                this.error = failure.toString();
+                completion.completeExceptionally(failure);
+            } else {
+                completion.complete(upserts);
+            }
+        }
+
+        ImportStatus status() {
+            long elapsed = elapsedMillis >= 0 ? elapsedMillis : (System.nanoTime() - startNanos) / 1_000_000;
+            double perSecond = elapsed > 0 ? upserts * 1000.0 / elapsed : 0;
+            String importId = resumedFrom != null ? resumedFrom : id;
+            return new ImportStatus(importId, file, format.name().toLowerCase(Locale.ROOT), state,
+                    resumedFrom != null, startedAt, finishedAt, total, committed, records, upserts, rejected,
+                    perSecond, error);
+        }
+    }
+}
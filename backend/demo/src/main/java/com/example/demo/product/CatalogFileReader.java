@@ -0,0 +1,282 @@
+package com.example.demo.product;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads products from a local NDJSON or CSV catalog file, one record at a time, through a
+ * memory-mapped window that slides along the file. Only the current window is mapped and only the
+ * current record is copied onto the heap, so file size is bounded by disk, not memory; a single
+ * record must fit in one window.
+ * NDJSON lines use the upstream field names (id, title, price, description, category, image);
+ * a CSV header row names the same columns. Files written by the catalog export are refused: their
+ * ids are local primary keys, not upstream ids, so importing them would attach products to the
+ * wrong upstream items.
+ * offset() is the byte position just past the last record returned, always a record boundary,
+ * so a reader opened there later continues with the next record.
+ */
+final class CatalogFileReader implements Closeable {
+
+    enum Format {
+        NDJSON, CSV;
+
+        static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".csv") ? CSV : NDJSON;
+        }
+    }
+
+    private static final ObjectReader JSON = new ObjectMapper().readerFor(JsonRecord.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    // Upstream fields, plus the export's name so export files can be told apart
+    private record JsonRecord(Long id, String title, BigDecimal price, String description, String category,
+                              String image, String name) {}
+
+    private final FileChannel channel;
+    private final Format format;
+    private final long size;
+    private final int windowBytes;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long offset;
+    private byte[] scratch = new byte[4096];
+    private int rejected;
+
+    // Column positions from the CSV header: id, title, price, description, category, image (-1 if absent)
+    private int[] columns;
+
+    CatalogFileReader(Path file, Format format, long startOffset, int windowBytes) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.format = format;
+        this.size = channel.size();
+        this.windowBytes = windowBytes;
+        try {
+            if (format == Format.CSV) {
+                List<String> header = readCsvRecord();
+                if (header == null) throw new IOException("CSV file has no header row: " + file);
+                columns = columns(header);
+            }
+            if (startOffset > offset) {
+                if (startOffset > size) throw new IOException("Offset " + startOffset + " is past the end of " + file);
+                offset = startOffset;
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    long offset() {
+        return offset;
+    }
+
+    // Records skipped because they could not be parsed or lack id, title or price
+    int rejected() {
+        return rejected;
+    }
+
+    /** The next valid record, or null at the end of the file. */
+    FakeStoreProduct next() throws IOException {
+        while (true) {
+            FakeStoreProduct product;
+            if (format == Format.CSV) {
+                List<String> fields = readCsvRecord();
+                if (fields == null) return null;
+                if (fields.size() == 1 && fields.get(0).isBlank()) continue;
+                product = fromCsv(fields);
+            } else {
+                int length = readLine();
+                if (length < 0) return null;
+                if (isBlank(scratch, length)) continue;
+                product = fromJson(length);
+            }
+            if (product != null && product.id() != null && product.title() != null && !product.title().isBlank()
+                    && product.price() != null) {
+                return product;
+            }
+            rejected++;
+        }
+    }
+
+    private FakeStoreProduct fromJson(int length) throws IOException {
+        JsonRecord record;
+        try {
+            record = JSON.readValue(scratch, 0, length);
+        } catch (IOException e) {
+            return null;
+        }
+        if (record.title() == null && record.name() != null) throw exportFile();
+        return new FakeStoreProduct(record.id(), record.title(), record.price(), record.description(),
+                record.category(), record.image());
+    }
+
+    private FakeStoreProduct fromCsv(List<String> fields) {
+        try {
+            String id = field(fields, 0);
+            String price = field(fields, 2);
+            return new FakeStoreProduct(
+                    id == null ? null : Long.valueOf(id.trim()),
+                    field(fields, 1),
+                    price == null ? null : new BigDecimal(price.trim()),
+                    field(fields, 3),
+                    field(fields, 4),
+                    field(fields, 5));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String field(List<String> fields, int column) {
+        int index = columns[column];
+        if (index < 0 || index >= fields.size()) return null;
+        String value = fields.get(index);
+        return value.isEmpty() ? null : value;
+    }
+
+    private static int[] columns(List<String> header) throws IOException {
+        int[] columns = new int[6];
+        Arrays.fill(columns, -1);
+        boolean named = false;
+        for (int i = 0; i < header.size(); i++) {
+            switch (header.get(i).trim().toLowerCase(Locale.ROOT)) {
+                case "id" -> columns[0] = i;
+                case "title" -> columns[1] = i;
+                case "price" -> columns[2] = i;
+                case "description" -> columns[3] = i;
+                case "category" -> columns[4] = i;
+                case "image" -> columns[5] = i;
+                case "name" -> named = true;
+                default -> { }
+            }
+        }
+        if (columns[1] < 0 && named) throw exportFile();
+        if (columns[0] < 0 || columns[1] < 0 || columns[2] < 0) {
+            throw new IOException("CSV header needs id, title and price columns, got " + header);
+        }
+        return columns;
+    }
+
+    private static IOException exportFile() {
+        return new IOException("File looks like a catalog export, whose ids are local keys rather than upstream ids; "
+                + "import upstream files with id and title instead");
+    }
+
+    // Copies the next line (without its line break) into scratch; -1 at the end of the file
+    private int readLine() throws IOException {
+        int end = recordEnd(false);
+        if (end < 0) return -1;
+        int from = (int) (offset - windowStart);
+        int length = end - from;
+        while (length > 0 && (window.get(from + length - 1) == '\n' || window.get(from + length - 1) == '\r')) length--;
+        if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+        window.get(from, scratch, 0, length);
+        offset = windowStart + end;
+        return length;
+    }
+
+    // RFC 4180 fields of the next record, which may span lines inside quotes; null at the end of the file
+    private List<String> readCsvRecord() throws IOException {
+        int end = recordEnd(true);
+        if (end < 0) return null;
+        int from = (int) (offset - windowStart);
+        List<String> fields = new ArrayList<>();
+        int length = 0;
+        boolean quoted = false;
+        for (int i = from; i < end; i++) {
+            byte b = window.get(i);
+            if (quoted) {
+                if (b == '"') {
+                    if (i + 1 < end && window.get(i + 1) == '"') {
+                        length = append(length, b);
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    length = append(length, b);
+                }
+            } else if (b == '"') {
+                quoted = true;
+            } else if (b == ',') {
+                fields.add(new String(scratch, 0, length, StandardCharsets.UTF_8));
+                length = 0;
+            } else if (b != '\n' && b != '\r') {
+                length = append(length, b);
+            }
+        }
+        fields.add(new String(scratch, 0, length, StandardCharsets.UTF_8));
+        offset = windowStart + end;
+        return fields;
+    }
+
+    private int append(int length, byte b) {
+        if (length == scratch.length) scratch = Arrays.copyOf(scratch, scratch.length * 2);
+        scratch[length] = b;
+        return length + 1;
+    }
+
+    /**
+     * Window index just past the record starting at offset, remapping so the whole record is
+     * inside the window; -1 at the end of the file. The last record may lack a line break.
+     */
+    private int recordEnd(boolean csv) throws IOException {
+        if (offset >= size) return -1;
+        if (window == null || offset < windowStart || offset >= windowStart + window.limit()) map(offset);
+        while (true) {
+            int end = scan((int) (offset - windowStart), csv);
+            if (end >= 0) return end;
+            if (windowStart + window.limit() >= size) return window.limit();
+            if (offset == windowStart) {
+                throw new IOException("Record at offset " + offset + " is larger than the " + windowBytes + " byte window");
+            }
+            map(offset);
+        }
+    }
+
+    private int scan(int from, boolean csv) {
+        boolean quoted = false;
+        for (int i = from, limit = window.limit(); i < limit; i++) {
+            byte b = window.get(i);
+            if (csv && b == '"') quoted = !quoted;
+            else if (b == '\n' && !quoted) return i + 1;
+        }
+        return -1;
+    }
+
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowBytes, size - start));
+    }
+
+    private static boolean isBlank(byte[] bytes, int length) {
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] != ' ' && bytes[i] != '\t') return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.demo.product;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic version of the catalog: bumped once per committed sync that changed products.
+ * Anything derived from the catalog can key on it to know whether it is still current.
+ */
+@Component
+public class CatalogGeneration {
+
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Instant changedAt;
+
+    // Last of the sync listeners, so whoever sees the new generation also sees rebuilt derived views
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogSynced(CatalogSyncedEvent event) {
+        changedAt = Instant.now();
+        generation.incrementAndGet();
+    }
+
+    public long current() {
+        return generation.get();
+    }
+
+    /** When the catalog last changed, or null if it has not changed since startup. */
+    public Instant changedAt() {
+        return changedAt;
+    }
+}
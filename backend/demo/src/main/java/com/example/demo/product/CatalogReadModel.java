@@ -0,0 +1,278 @@
+package com.example.demo.product;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * In-process, column-oriented copy of the catalog used to answer /api/products listings
+ * without a database round trip. The whole snapshot is rebuilt after every sync and swapped
+ * in with a single volatile write, so readers always see a consistent catalog. Reservation
+ * changes only patch the stock of the affected products, in a copy swapped in the same way.
+ * When disabled (the default) every query returns empty and callers use the repository.
+ */
+@Component
+public class CatalogReadModel {
+
+    private final ProductRepository repo;
+    private final boolean enabled;
+
+    private volatile Snapshot snapshot;
+
+    public CatalogReadModel(ProductRepository repo,
+                            @Value("${catalog.read-model.enabled:false}") boolean enabled) {
+        this.repo = repo;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void onStartup() {
+        if (enabled) rebuild();
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+    public void onCatalogSynced(CatalogSyncedEvent event) {
+        if (enabled) rebuild();
+    }
+
+    public void rebuild() {
+        Snapshot built = Snapshot.of(repo.findAllWithCategory());
+        synchronized (this) {
+            snapshot = built;
+        }
+    }
+
+    // Ahead of the response cache, so listings it re-caches after evicting already show the new stock
+    @Order(Ordered.LOWEST_PRECEDENCE - 1)
+    @EventListener
+    public void onStockChanged(StockChangedEvent event) {
+        if (!enabled || snapshot == null) return;
+        List<Long> ids = new ArrayList<>(event.productIds());
+        List<ProductDto> fresh = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += STOCK_LOOKUP_SIZE) {
+            fresh.addAll(repo.findDtosByIdIn(ids.subList(from, Math.min(from + STOCK_LOOKUP_SIZE, ids.size()))));
+        }
+        patchStock(fresh);
+    }
+
+    // Swaps are serialized, so a patch never overwrites a snapshot swapped in after it started
+    private synchronized void patchStock(List<ProductDto> fresh) {
+        Snapshot s = snapshot;
+        ProductDto[] dtos = null;
+        for (ProductDto dto : fresh) {
+            Integer row = s.rowById.get(dto.id());
+            if (row == null || Objects.equals(s.dtos[row].stock(), dto.stock())) continue;
+            if (dtos == null) dtos = s.dtos.clone();
+            ProductDto old = dtos[row];
+            dtos[row] = new ProductDto(old.id(), old.name(), old.description(), old.imageUrl(), old.category(),
+                    old.price(), dto.stock(), old.lastUpdated());
+        }
+        if (dtos != null) snapshot = s.withDtos(dtos);
+    }
+
+    /**
+     * Answers a listing from memory. Returns empty when the model is disabled, not loaded yet,
+     * or the requested sort is not one we keep an ordering for.
+     */
+    public Optional<Page<ProductDto>> query(String category, String q,
+                                            BigDecimal minPrice, BigDecimal maxPrice,
+                                            Pageable pageable) {
+        String needle = (q == null || q.isBlank()) ? null : q.toLowerCase(Locale.ROOT);
+        return run(category, needle, null, minPrice, maxPrice, pageable);
+    }
+
+    /**
+     * Same as {@link #query} but restricted to the given search hits; sorting by "relevance"
+     * keeps the order of {@code rankedIds}.
+     */
+    public Optional<Page<ProductDto>> queryHits(String category, List<Long> rankedIds,
+                                                BigDecimal minPrice, BigDecimal maxPrice,
+                                                Pageable pageable) {
+        return run(category, null, rankedIds, minPrice, maxPrice, pageable);
+    }
+
+    // Keeps IN lists well under driver bind-parameter limits
+    private static final int STOCK_LOOKUP_SIZE = 1000;
+
+    private Optional<Page<ProductDto>> run(String category, String needle, List<Long> rankedIds,
+                                           BigDecimal minPrice, BigDecimal maxPrice,
+                                           Pageable pageable) {
+        Snapshot s = snapshot;
+        if (!enabled || s == null) return Optional.empty();
+
+        Sort.Order order = singleOrder(pageable.getSort());
+        if (order == null) return Optional.empty();
+        int[] ordering;
+        BitSet hits = null;
+        if (rankedIds != null && ProductService.RELEVANCE.equals(order.getProperty())) {
+            ordering = s.rows(rankedIds);
+            order = Sort.Order.asc(ProductService.RELEVANCE);
+        } else {
+            ordering = s.ordering(order.getProperty());
+            if (ordering == null) return Optional.empty();
+            if (rankedIds != null) {
+                hits = new BitSet(s.ids.length);
+                for (int row : s.rows(rankedIds)) hits.set(row);
+            }
+        }
+
+        int categoryId = -1;
+        if (category != null && !category.isBlank()) {
+            Integer id = s.categoryIds.get(category.toLowerCase(Locale.ROOT));
+            if (id == null) return Optional.of(Page.empty(pageable));
+            categoryId = id;
+        }
+        long min = minPrice == null ? Long.MIN_VALUE : Money.ceilCents(minPrice);
+        long max = maxPrice == null ? Long.MAX_VALUE : Money.floorCents(maxPrice);
+
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        List<ProductDto> content = new ArrayList<>(Math.min(limit, 64));
+        int total = 0;
+
+        boolean asc = order.isAscending();
+        for (int k = 0; k < ordering.length; k++) {
+            int i = ordering[asc ? k : ordering.length - 1 - k];
+            if (hits != null && !hits.get(i)) continue;
+            if (categoryId >= 0 && s.category[i] != categoryId) continue;
+            long price = s.priceCents[i];
+            if (price < min || price > max) continue;
+            if (needle != null && !s.lowerNames[i].contains(needle)) continue;
+            if (total >= offset && content.size() < limit) content.add(s.dtos[i]);
+            total++;
+        }
+        return Optional.of(new PageImpl<>(content, pageable, total));
+    }
+
+    private static Sort.Order singleOrder(Sort sort) {
+        Iterator<Sort.Order> it = sort.iterator();
+        if (!it.hasNext()) return Sort.Order.asc("id");
+        Sort.Order first = it.next();
+        return it.hasNext() ? null : first;
+    }
+
+    private static final class Snapshot {
+        final long[] ids;
+        final long[] priceCents;
+        final int[] category;
+        final long[] createdAt;
+        final String[] lowerNames;
+        final ProductDto[] dtos;
+        final Map<String, Integer> categoryIds;
+        final Map<Long, Integer> rowById;
+
+        // Row indexes sorted ascending by each supported sort key
+        final int[] byId;
+        final int[] byPrice;
+        final int[] byName;
+        final int[] byCreatedAt;
+
+        // Same rows and orderings with other DTOs, for stock patches
+        private Snapshot(Snapshot base, ProductDto[] dtos) {
+            ids = base.ids;
+            priceCents = base.priceCents;
+            category = base.category;
+            createdAt = base.createdAt;
+            lowerNames = base.lowerNames;
+            this.dtos = dtos;
+            categoryIds = base.categoryIds;
+            rowById = base.rowById;
+            byId = base.byId;
+            byPrice = base.byPrice;
+            byName = base.byName;
+            byCreatedAt = base.byCreatedAt;
+        }
+
+        Snapshot withDtos(ProductDto[] dtos) {
+            return new Snapshot(this, dtos);
+        }
+
+        private Snapshot(int n) {
+            ids = new long[n];
+            priceCents = new long[n];
+            category = new int[n];
+            createdAt = new long[n];
+            lowerNames = new String[n];
+            dtos = new ProductDto[n];
+            categoryIds = new HashMap<>();
+            rowById = new HashMap<>(n * 2);
+            byId = new int[n];
+            byPrice = new int[n];
+            byName = new int[n];
+            byCreatedAt = new int[n];
+        }
+
+        static Snapshot of(List<Product> products) {
+            Snapshot s = new Snapshot(products.size());
+            for (int i = 0; i < products.size(); i++) {
+                Product p = products.get(i);
+                String categoryName = p.getCategory() != null ? p.getCategory().getName() : null;
+                s.ids[i] = p.getId();
+                s.rowById.put(p.getId(), i);
+                s.priceCents[i] = Money.toCents(p.getPrice());
+                s.category[i] = categoryName == null ? -1
+                        : s.categoryIds.computeIfAbsent(categoryName.toLowerCase(Locale.ROOT), k -> s.categoryIds.size());
+                // Missing timestamps sort last ascending, like NULLs in PostgreSQL
+                s.createdAt[i] = p.getCreatedAt() == null ? Long.MAX_VALUE : p.getCreatedAt().toEpochMilli();
+                s.lowerNames[i] = p.getName() == null ? "" : p.getName().toLowerCase(Locale.ROOT);
+                s.dtos[i] = ProductService.toDto(p);
+            }
+            sortIndexes(s.byId, (a, b) -> Long.compare(s.ids[a], s.ids[b]));
+            sortIndexes(s.byPrice, (a, b) -> Long.compare(s.priceCents[a], s.priceCents[b]));
+            // Case-insensitive with missing names last, matching the database ordering
+            Comparator<String> names = Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER);
+            sortIndexes(s.byName, (a, b) -> names.compare(s.dtos[a].name(), s.dtos[b].name()));
+            sortIndexes(s.byCreatedAt, (a, b) -> Long.compare(s.createdAt[a], s.createdAt[b]));
+            return s;
+        }
+
+        int[] ordering(String property) {
+            return switch (property) {
+                case "id" -> byId;
+                case "price" -> byPrice;
+                case "name" -> byName;
+                case "createdAt" -> byCreatedAt;
+                default -> null;
+            };
+        }
+
+        // Rows for the given ids in the same order; ids not in the snapshot are skipped
+        int[] rows(List<Long> productIds) {
+            int[] out = new int[productIds.size()];
+            int n = 0;
+            for (Long id : productIds) {
+                Integer row = rowById.get(id);
+                if (row != null) out[n++] = row;
+            }
+            return Arrays.copyOf(out, n);
+        }
+
+        private static void sortIndexes(int[] target, Comparator<Integer> cmp) {
+            Integer[] boxed = new Integer[target.length];
+            for (int i = 0; i < boxed.length; i++) boxed[i] = i;
+            // Tie-break on row index (id order from the query) to keep pages stable
+            Arrays.sort(boxed, cmp.thenComparingInt(i -> i));
+            for (int i = 0; i < boxed.length; i++) target[i] = boxed[i];
+        }
+    }
+}
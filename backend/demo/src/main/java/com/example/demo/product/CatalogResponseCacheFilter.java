@@ -0,0 +1,190 @@
+package com.example.demo.product;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Serves GET /api/products, /api/products/{id} and /api/categories from memory between syncs.
+ * Responses are cached under the catalog generation plus the normalized query, so a sync makes
+ * every earlier entry unreachable without having to know which pages it touched. Each response
+ * carries a strong ETag (hash of the body) and Cache-Control, and a matching If-None-Match is
+ * answered with 304 whether or not the body is still cached. Each entry also remembers which
+ * products it shows, so a reservation change evicts only the responses showing those products.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+@ConditionalOnProperty(name = "catalog.response-cache.enabled", havingValue = "true", matchIfMissing = true)
+public class CatalogResponseCacheFilter extends OncePerRequestFilter {
+
+    private static final Pattern PRODUCT_ID = Pattern.compile("/api/products/\\d+");
+
+    /** Request attribute where the listing endpoint leaves the ids of the products on the page. */
+    static final String PRODUCT_IDS = CatalogResponseCacheFilter.class.getName() + ".productIds";
+
+    // productIds is null when unknown, in which case any stock change evicts the entry
+    private record CachedResponse(byte[] body, String contentType, String etag, Set<Long> productIds) {}
+
+    private final CatalogGeneration generation;
+    private final String cacheControl;
+    private final Cache<String, CachedResponse> cache;
+
+    public CatalogResponseCacheFilter(CatalogGeneration generation,
+                                      @Value("${catalog.response-cache.max-bytes:67108864}") long maxBytes,
+                                      @Value("${catalog.response-cache.max-age:60s}") Duration maxAge) {
+        this.generation = generation;
+        this.cacheControl = "public, max-age=" + maxAge.toSeconds() + ", must-revalidate";
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, CachedResponse r) -> key.length() * 2 + r.body().length
+                        + (r.productIds() == null ? 0 : r.productIds().size() * 16))
+                .build();
+    }
+
+    // Entries of older generations can no longer be hit; drop them rather than wait for eviction
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogSynced(CatalogSyncedEvent event) {
+        cache.invalidateAll();
+    }
+
+    // Reservations change the stock shown for these products, so only responses showing one of them go
+    @EventListener
+    public void onStockChanged(StockChangedEvent event) {
+        cache.asMap().values().removeIf(r ->
+                r.productIds() == null || !Collections.disjoint(r.productIds(), event.productIds()));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) || key(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // Read the generation before producing the body, so a sync finishing mid-request files it under the old one
+        String key = generation.current() + " " + key(request);
+        CachedResponse cached = cache.getIfPresent(key);
+        if (cached != null) {
+            write(request, response, cached);
+            return;
+        }
+
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        chain.doFilter(request, wrapper);
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK || wrapper.containsHeader(HttpHeaders.SET_COOKIE)) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+        // The body only ever reached the wrapper's buffer, so the real response can still be written from scratch
+        byte[] body = wrapper.getContentAsByteArray();
+        CachedResponse created = new CachedResponse(body, wrapper.getContentType(), etag(body), productIds(request));
+        cache.put(key, created);
+        write(request, response, created);
+    }
+
+    private void write(HttpServletRequest request, HttpServletResponse response, CachedResponse cached) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, cached.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), cached.etag())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(cached.contentType());
+        response.setContentLength(cached.body().length);
+        response.getOutputStream().write(cached.body());
+    }
+
+    // Categories show no stock; a product page shows its own product; listings say what they showed
+    @SuppressWarnings("unchecked")
+    private static Set<Long> productIds(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.equals("/api/categories")) return Set.of();
+        if (PRODUCT_ID.matcher(path).matches()) return Set.of(Long.valueOf(path.substring("/api/products/".length())));
+        Object ids = request.getAttribute(PRODUCT_IDS);
+        return ids instanceof Set<?> set ? (Set<Long>) set : null;
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Normalized cache key for a cacheable request, or null if the request should bypass the cache.
+     * Parameters take the controller's defaults, so "?page=0&size=12" and "" share an entry.
+     */
+    static String key(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.equals("/api/categories")) return path;
+        if (PRODUCT_ID.matcher(path).matches()) return path;
+        if (!path.equals("/api/products")) return null;
+        if (Boolean.parseBoolean(request.getParameter("forceSync"))) return null;
+        try {
+            return path
+                    + "?category=" + text(request.getParameter("category"))
+                    + "&q=" + text(request.getParameter("q"))
+                    + "&minPrice=" + decimal(request.getParameter("minPrice"))
+                    + "&maxPrice=" + decimal(request.getParameter("maxPrice"))
+                    + "&sortBy=" + orDefault(request.getParameter("sortBy"), "createdAt")
+                    + "&order=" + ("asc".equalsIgnoreCase(request.getParameter("order")) ? "asc" : "desc")
+                    + "&page=" + Integer.parseInt(orDefault(request.getParameter("page"), "0"))
+                    + "&size=" + Integer.parseInt(orDefault(request.getParameter("size"), "12"));
+        } catch (NumberFormatException e) {
+            // Let the controller reject it
+            return null;
+        }
+    }
+
+    // Blank means no filter to the service; encoded so values cannot spill into other parameters
+    private static String text(String value) {
+        return value == null || value.isBlank() ? "" : URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String orDefault(String value, String fallback) {
+        return value == null ? fallback : value;
+    }
+
+    private static String decimal(String value) {
+        return value == null ? "" : new BigDecimal(value).stripTrailingZeros().toPlainString();
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.example.demo.product;
+
+// Published by ProductSyncService once a sync has written to the catalog tables
+public record CatalogSyncedEvent(String category, int upserts) {}
@@ -1,32 +1,259 @@
 package com.example.demo.product;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * HTTP client for the upstream product feed.
+ * One shared java.net.http.HttpClient (HTTP/2 with connection reuse), connect and per-request
+ * timeouts, bounded retries with exponential backoff for I/O errors and 5xx/429 responses, and a
+ * circuit breaker that fails fast after repeated failures. Feed requests are conditional
+ * (If-None-Match / If-Modified-Since), so an unchanged feed comes back as notModified; validators
+ * are only remembered once the caller has applied the feed (commitValidators), so a sync that
+ * failed fetches the full feed again next time.
+ * Every attempt is timed as catalog.upstream.requests, tagged with the endpoint and HTTP status.
+ */
 @Component
 public class ExternalProductClient {
 
-    private final RestTemplate http = new RestTemplate();
-    private static final String BASE = "https://fakestoreapi.com/products";
+    private static final TypeReference<List<FakeStoreProduct>> PRODUCT_LIST = new TypeReference<>() {};
+
+    private final HttpClient http;
+    private final ObjectMapper mapper;
+    private final String base;
+    private final Duration readTimeout;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final CircuitBreaker breaker;
+    private final MeterRegistry registry;
+
+    // Last validators and body per feed URL, for conditional requests
+    private final Map<String, CachedFeed> feeds = new ConcurrentHashMap<>();
+
+    public ExternalProductClient(ObjectMapper mapper, MeterRegistry registry,
+                                 @Value("${catalog.upstream.base-url:https://fakestoreapi.com/products}") String base,
+                                 @Value("${catalog.upstream.connect-timeout:2s}") Duration connectTimeout,
+                                 @Value("${catalog.upstream.read-timeout:5s}") Duration readTimeout,
+                                 @Value("${catalog.upstream.max-retries:2}") int maxRetries,
+                                 @Value("${catalog.upstream.retry-backoff:200ms}") Duration retryBackoff,
+                                 @Value("${catalog.upstream.breaker.failure-threshold:5}") int failureThreshold,
+                                 @Value("${catalog.upstream.breaker.open-duration:30s}") Duration openDuration) {
+        this.mapper = mapper;
+        this.registry = registry;
+        this.base = base.endsWith("/") ? base.substring(0, base.length() - 1) : base;
+        this.readTimeout = readTimeout;
+        this.maxRetries = maxRetries;
+        this.retryBackoff = retryBackoff;
+        this.breaker = new CircuitBreaker(failureThreshold, openDuration);
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Upstream products plus whether the server reported them unchanged since the last applied fetch.
+     * A full response carries the validators to commit once it has been applied.
+     */
+    public record Feed(List<FakeStoreProduct> products, boolean notModified, Validators validators) {}
+
+    public record Validators(String url, String etag, String lastModified) {}
+
+    private record CachedFeed(String etag, String lastModified, List<FakeStoreProduct> products) {}
 
     public List<FakeStoreProduct> list(String category) throws RestClientException {
-        FakeStoreProduct[] raw;
-        if (category != null && !category.isBlank()) {
-            String enc = java.net.URLEncoder.encode(category, StandardCharsets.UTF_8);
-            raw = http.getForObject(BASE + "/category/" + enc, FakeStoreProduct[].class);
+        return fetch(category).products();
+    }
+
+    public Feed fetch(String category) throws RestClientException {
+        return join(fetchAsync(category));
+    }
+
+    public CompletableFuture<List<FakeStoreProduct>> listAsync(String category) {
+        return fetchAsync(category).thenApply(Feed::products);
+    }
+
+    public CompletableFuture<Feed> fetchAsync(String category) {
+        String url = (category != null && !category.isBlank())
+                ? base + "/category/" + URLEncoder.encode(category, StandardCharsets.UTF_8).replace("+", "%20")
+                : base;
+        CachedFeed cached = feeds.get(url);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .header("Accept", "application/json")
+                .GET();
+        if (cached != null && cached.etag() != null) request.header("If-None-Match", cached.etag());
+        if (cached != null && cached.lastModified() != null) request.header("If-Modified-Since", cached.lastModified());
+
+        String endpoint = url.equals(base) ? "products" : "category";
+        return send(request.build(), endpoint, 0).thenApply(response -> {
+            if (response.statusCode() == 304 && cached != null) {
+                return new Feed(cached.products(), true, null);
+            }
+            List<FakeStoreProduct> products = parse(response.body(), PRODUCT_LIST, url);
+            products = products == null ? List.of() : List.copyOf(products);
+            String etag = response.headers().firstValue("ETag").orElse(null);
+            String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+            Validators validators = etag != null || lastModified != null ? new Validators(url, etag, lastModified) : null;
+            return new Feed(products, false, validators);
+        });
+    }
+
+    /**
+     * Makes later fetches of the feed's URL conditional on this response. Call only after the feed
+     * has been applied: until then a sync that failed or rolled back must get the full feed again.
+     */
+    public void commitValidators(Feed feed) {
+        Validators v = feed.validators();
+        if (v != null) feeds.put(v.url(), new CachedFeed(v.etag(), v.lastModified(), feed.products()));
+    }
+
+    // Same, once the surrounding transaction commits; nothing is remembered if it rolls back
+    public void commitValidatorsAfterCommit(Feed feed) {
+        if (feed.validators() == null) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    commitValidators(feed);
+                }
+            });
         } else {
-            raw = http.getForObject(BASE, FakeStoreProduct[].class);
+            commitValidators(feed);
         }
-        if (raw == null) return List.of();
-        return Arrays.asList(raw);
     }
 
     public FakeStoreProduct find(Long id) throws RestClientException {
-        return http.getForObject(BASE + "/{id}", FakeStoreProduct.class, id);
+        String url = base + "/" + id;
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        return join(send(request, "product", 0).thenApply(r -> parse(r.body(), new TypeReference<FakeStoreProduct>() {}, url)));
+    }
+
+    private CompletableFuture<HttpResponse<byte[]>> send(HttpRequest request, String endpoint, int attempt) {
+        if (!breaker.allowRequest()) {
+            registry.counter("catalog.upstream.rejected", "endpoint", endpoint).increment();
+            return CompletableFuture.failedFuture(
+                    new RestClientException("Upstream circuit open, skipping " + request.uri()));
+        }
+        long start = System.nanoTime();
+        return http.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, error) -> {
+                    record(endpoint, error != null ? "IO_ERROR" : String.valueOf(response.statusCode()), System.nanoTime() - start);
+                    boolean retryable = error != null || isRetryable(response.statusCode());
+                    if (!retryable) {
+                        breaker.onSuccess();
+                        if (response.statusCode() >= 400) {
+                            throw new RestClientException("Upstream returned " + response.statusCode() + " for " + request.uri());
+                        }
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    breaker.onFailure();
+                    if (attempt >= maxRetries) {
+                        String reason = error != null ? unwrap(error).toString() : "status " + response.statusCode();
+                        throw new RestClientException("Upstream request failed after " + (attempt + 1)
+                                + " attempts: " + request.uri() + " (" + reason + ")", unwrap(error));
+                    }
+                    long delay = retryBackoff.toMillis() << attempt;
+                    return CompletableFuture.supplyAsync(() -> null,
+                                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> send(request, endpoint, attempt + 1));
+                })
+                .thenCompose(f -> f);
+    }
+
+    private void record(String endpoint, String status, long nanos) {
+        Timer.builder("catalog.upstream.requests")
+                .description("Upstream product API calls, one per attempt")
+                .tag("endpoint", endpoint)
+                .tag("status", status)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private <T> T parse(byte[] body, TypeReference<T> type, String url) {
+        try {
+            return mapper.readValue(body, type);
+        } catch (IOException e) {
+            throw new RestClientException("Could not parse upstream response from " + url, e);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof RestClientException rce) throw rce;
+            throw new RestClientException("Upstream request failed", cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        while (t instanceof CompletionException && t.getCause() != null) t = t.getCause();
+        return t;
+    }
+
+    /** Consecutive-failure breaker: open for a cool-down, then lets a single trial request through. */
+    private static final class CircuitBreaker {
+        private final int threshold;
+        private final long openNanos;
+        private int failures;
+        private long openedAt;
+        private boolean trialInFlight;
+
+        CircuitBreaker(int threshold, Duration openDuration) {
+            this.threshold = threshold;
+            this.openNanos = openDuration.toNanos();
+        }
+
+        synchronized boolean allowRequest() {
+            if (failures < threshold) return true;
+            if (System.nanoTime() - openedAt < openNanos || trialInFlight) return false;
+            trialInFlight = true; // half-open
+            return true;
+        }
+
+        synchronized void onSuccess() {
+            failures = 0;
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure() {
+            failures++;
+            trialInFlight = false;
+            if (failures >= threshold) openedAt = System.nanoTime();
+        }
     }
 }
@@ -1,6 +1,11 @@
 package com.example.demo.product;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
 
 public record FakeStoreProduct(
         Long id,
@@ -9,4 +14,20 @@ public record FakeStoreProduct(
         String description,
         String category,
         String image
-) {}
+) {
+
+    /**
+     * Hex digest (128 bits of SHA-256) of the fields a sync writes. Prices compare by value and
+     * categories case-insensitively, matching how they are stored.
+     */
+    public String contentHash() {
+        String row = title + "\u0000" + description + "\u0000" + (price == null ? "" : price.stripTrailingZeros().toPlainString())
+                + "\u0000" + image + "\u0000" + (category == null ? "" : category.toLowerCase(Locale.ROOT));
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(row.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.demo.product;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// Progress of a catalog file import, committed together with each chunk it covers
+@Entity
+@Table(name = "import_checkpoints")
+public class ImportCheckpoint {
+
+    public enum State { RUNNING, DONE, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "import_id", nullable = false)
+    private String importId;
+
+    // Path, size and modification time of the file; a restart only resumes the same file
+    @Column(name = "file_key", nullable = false, unique = true, length = 1000)
+    private String fileKey;
+
+    // Bytes of the file already written; always the end of a record
+    @Column(name = "committed_offset", nullable = false)
+    private long committedOffset;
+
+    @Column(nullable = false)
+    private long records;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private State state = State.RUNNING;
+
+    @Column(length = 1000)
+    private String error;
+
+    @Column(nullable = false)
+    private Instant updatedAt = Instant.now();
+
+    public ImportCheckpoint() {}
+
+    public ImportCheckpoint(String importId, String fileKey, long committedOffset) {
+        this.importId = importId;
+        this.fileKey = fileKey;
+        this.committedOffset = committedOffset;
+    }
+
+    // getters/setters
+    public Long getId() { return id; }
+    public String getImportId() { return importId; }
+    public void setImportId(String importId) { this.importId = importId; }
+    public String getFileKey() { return fileKey; }
+    public long getCommittedOffset() { return committedOffset; }
+    public void setCommittedOffset(long committedOffset) { this.committedOffset = committedOffset; }
+    public long getRecords() { return records; }
+    public void setRecords(long records) { this.records = records; }
+    public State getState() { return state; }
+    public void setState(State state) { this.state = state; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
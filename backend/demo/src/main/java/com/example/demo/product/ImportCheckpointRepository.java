@@ -0,0 +1,21 @@
+package com.example.demo.product;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+
+public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpoint, Long> {
+
+    Optional<ImportCheckpoint> findByFileKey(String fileKey);
+
+    @Modifying
+    @Query("UPDATE ImportCheckpoint c SET c.committedOffset = :offset, c.records = :records, c.state = :state,"
+         + " c.error = :error, c.updatedAt = :now WHERE c.id = :id")
+    int updateProgress(@Param("id") Long id, @Param("offset") long offset, @Param("records") long records,
+                       @Param("state") ImportCheckpoint.State state, @Param("error") String error,
+                       @Param("now") Instant now);
+}
@@ -0,0 +1,21 @@
+package com.example.demo.product;
+
+import java.time.Instant;
+
+// Progress of a catalog file import as reported by /api/sync/imports
+public record ImportStatus(
+        String importId,
+        String file,
+        String format,
+        String state,
+        boolean resumed,
+        Instant startedAt,
+        Instant finishedAt,
+        long totalBytes,
+        long committedBytes,
+        long records,
+        long upserts,
+        int rejected,
+        double recordsPerSecond,
+        String error
+) {}
@@ -0,0 +1,376 @@
+package com.example.demo.product;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stock reservations for cart lines. Each cart session holds the units of its lines until it has
+ * been idle for inventory.hold-ttl; adding past what is left fails with 409 instead of overselling.
+ * <p>
+ * Reservations never touch the database on the request path: every product has a sharded
+ * in-memory StockCounter loaded from products.stock minus products.reserved, and a scheduled
+ * reconciler writes the net change per product to products.reserved in one JDBC batch. Each write
+ * is guarded by products.stock_version; a row whose version moved (another instance, or a manual
+ * fix) is reread and the counter rebased on what changed, and its delta retried on the next run.
+ * Every instance also keeps its own share of reserved per product in reservation_shares, written in
+ * the same transaction. Holds live in memory only, so on startup an instance takes back just its
+ * share (under inventory.instance-id, which must stay the same across its restarts) and rebuilds
+ * it from the carts it last changed (carts.held_by) within the hold TTL; holds of other instances
+ * are left alone. Counters are
+ * per instance: running several instances needs sticky carts, as with the write-behind cart store.
+ */
+@Component
+public class InventoryReservations {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryReservations.class);
+
+    private static final String RECONCILE_SQL =
+            "UPDATE products SET reserved = COALESCE(reserved, 0) + ?, stock_version = COALESCE(stock_version, 0) + 1 "
+          + "WHERE id = ? AND COALESCE(stock_version, 0) = ?";
+    private static final String SHARE_UPDATE_SQL =
+            "UPDATE reservation_shares SET units = units + ? WHERE instance_id = ? AND product_id = ?";
+    private static final String SHARE_INSERT_SQL =
+            "INSERT INTO reservation_shares (instance_id, product_id, units) VALUES (?, ?, ?)";
+    private static final String LOAD_SQL =
+            "SELECT COALESCE(stock, 0), COALESCE(reserved, 0), COALESCE(stock_version, 0) FROM products WHERE id = ?";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final EntityManagerFactory emf;
+    private final ApplicationEventPublisher events;
+    private final boolean enabled;
+    private final String instanceId;
+    private final long ttlMillis;
+    private final int shards;
+    private final Counter rejected;
+    private final Timer reconcileTimer;
+
+    private final ConcurrentHashMap<Long, StockCounter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Holds> sessions = new ConcurrentHashMap<>();
+
+    public InventoryReservations(JdbcTemplate jdbc, PlatformTransactionManager txManager, EntityManagerFactory emf,
+                                 ApplicationEventPublisher events, MeterRegistry registry,
+                                 @Value("${inventory.enabled:true}") boolean enabled,
+                                 @Value("${inventory.instance-id:${HOSTNAME:local}}") String instanceId,
+                                 @Value("${inventory.hold-ttl:15m}") Duration holdTtl,
+                                 @Value("${inventory.shards:8}") int shards) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.emf = emf;
+        this.events = events;
+        this.enabled = enabled;
+        this.instanceId = instanceId;
+        this.ttlMillis = holdTtl.toMillis();
+        this.shards = shards;
+        this.rejected = Counter.builder("inventory.reservations.rejected")
+                .description("Cart changes refused because not enough stock was left")
+                .register(registry);
+        this.reconcileTimer = Timer.builder("inventory.reconcile")
+                .description("Batched write of reservation changes to products.reserved")
+                .register(registry);
+        registry.gauge("inventory.holds.sessions", sessions, Map::size);
+    }
+
+    // Units held by one cart session; guarded by its own monitor
+    private static final class Holds {
+        final Map<Long, Integer> units = new HashMap<>();
+        long expiresAt;
+        boolean closed;
+    }
+
+    /**
+     * Sets the units the session holds of each product to the given quantity (0 releases them),
+     * reserving or releasing the difference. All or nothing: if any product has too few units left,
+     * nothing changes and a 409 is thrown. Inside a transaction the change is undone on rollback.
+     */
+    public void hold(String sessionId, Map<Long, Integer> quantities) {
+        if (!enabled) return;
+        Map<Long, Integer> previous = apply(sessionId, quantities, System.currentTimeMillis() + ttlMillis);
+        if (!previous.isEmpty() && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) return;
+                    try {
+                        apply(sessionId, previous, System.currentTimeMillis() + ttlMillis);
+                    } catch (ResponseStatusException e) {
+                        // Units released by the rolled back change were taken meanwhile; the line stays unheld
+                        log.debug("Could not restore holds of {} after rollback", sessionId);
+                    }
+                }
+            });
+        }
+    }
+
+    public void hold(String sessionId, Long productId, int quantity) {
+        hold(sessionId, Map.of(productId, quantity));
+    }
+
+    /** Name this instance's holds go under; cart stores record it on the carts they change. */
+    public String instanceId() {
+        return instanceId;
+    }
+
+    /** Releases everything the session holds. */
+    public void releaseAll(String sessionId) {
+        if (!enabled) return;
+        Holds holds = sessions.get(sessionId);
+        if (holds == null) return;
+        synchronized (holds) {
+            if (!holds.closed) close(sessionId, holds);
+        }
+    }
+
+    /** Extends the session's holds by another TTL; any cart access counts as activity. */
+    public void touch(String sessionId) {
+        if (!enabled) return;
+        Holds holds = sessions.get(sessionId);
+        if (holds == null) return;
+        synchronized (holds) {
+            if (!holds.closed) holds.expiresAt = System.currentTimeMillis() + ttlMillis;
+        }
+    }
+
+    // Returns what the session held before for every product it changed
+    private Map<Long, Integer> apply(String sessionId, Map<Long, Integer> quantities, long expiresAt) {
+        int hint = sessionId.hashCode();
+        for (;;) {
+            Holds holds = sessions.computeIfAbsent(sessionId, s -> new Holds());
+            synchronized (holds) {
+                // Expired and dropped by the sweeper between lookup and lock
+                if (holds.closed) continue;
+                Map<Long, Integer> previous = new HashMap<>();
+                try {
+                    for (Map.Entry<Long, Integer> e : quantities.entrySet()) {
+                        Long productId = e.getKey();
+                        int before = holds.units.getOrDefault(productId, 0);
+                        int target = Math.max(0, e.getValue());
+                        if (target == before) continue;
+                        StockCounter counter = counter(productId);
+                        if (target > before && !counter.reserve(target - before, hint)) {
+                            rejected.increment();
+                            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                                    "Only " + (counter.available() + before) + " left of product " + productId);
+                        }
+                        if (target < before) counter.release(before - target, hint);
+                        previous.put(productId, before);
+                        if (target == 0) holds.units.remove(productId); else holds.units.put(productId, target);
+                    }
+                } catch (RuntimeException e) {
+                    undo(holds, previous, hint);
+                    if (holds.units.isEmpty()) close(sessionId, holds);
+                    throw e;
+                }
+                holds.expiresAt = Math.max(holds.expiresAt, expiresAt);
+                if (holds.units.isEmpty()) close(sessionId, holds);
+                return previous;
+            }
+        }
+    }
+
+    // Puts back holds changed by a partly applied call
+    private void undo(Holds holds, Map<Long, Integer> previous, int hint) {
+        for (Map.Entry<Long, Integer> e : previous.entrySet()) {
+            Long productId = e.getKey();
+            int before = e.getValue();
+            StockCounter counter = counter(productId);
+            int now = holds.units.getOrDefault(productId, 0);
+            if (now > before) counter.release(now - before, hint);
+            // Units released a moment ago may already be gone; then the line keeps the smaller hold
+            else if (now < before && !counter.reserve(before - now, hint)) before = now;
+            if (before == 0) holds.units.remove(productId); else holds.units.put(productId, before);
+        }
+    }
+
+    // Caller holds the monitor
+    private void close(String sessionId, Holds holds) {
+        int hint = sessionId.hashCode();
+        holds.units.forEach((productId, units) -> counter(productId).release(units, hint));
+        holds.units.clear();
+        holds.closed = true;
+        sessions.remove(sessionId, holds);
+    }
+
+    private StockCounter counter(Long productId) {
+        StockCounter counter = counters.get(productId);
+        if (counter != null) return counter;
+        // Loaded outside the map, since threads parked on a computeIfAbsent bin would each pin a pooled
+        // connection; and in a transaction, which reuses the request's open-in-view connection instead of a second one
+        List<StockCounter> found = tx.execute(status -> jdbc.query(LOAD_SQL,
+                (rs, i) -> new StockCounter(productId, shards, rs.getInt(1), rs.getInt(2), rs.getLong(3)), productId));
+        if (found.isEmpty()) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found with id: " + productId);
+        counter = counters.putIfAbsent(productId, found.get(0));
+        return counter != null ? counter : found.get(0);
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.sweep-interval-ms:10000}")
+    public void expire() {
+        long now = System.currentTimeMillis();
+        int expired = 0;
+        for (Map.Entry<String, Holds> e : sessions.entrySet()) {
+            Holds holds = e.getValue();
+            synchronized (holds) {
+                if (!holds.closed && holds.expiresAt < now) {
+                    close(e.getKey(), holds);
+                    expired++;
+                }
+            }
+        }
+        if (expired > 0) log.debug("Released holds of {} idle cart sessions", expired);
+    }
+
+    /**
+     * Writes the net reservation change of every product since the last run in one batch.
+     * Rows whose stock_version moved are reread and their counters rebased; their deltas stay
+     * pending and go out with the next run.
+     */
+    @Scheduled(fixedDelayString = "${inventory.reconcile-interval-ms:1000}")
+    public synchronized void reconcile() {
+        List<StockCounter> dirty = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (StockCounter c : counters.values()) {
+            int delta = c.drainPending();
+            if (delta == 0) continue;
+            dirty.add(c);
+            rows.add(new Object[]{delta, c.productId, c.version});
+        }
+        if (dirty.isEmpty()) return;
+
+        int[] updated;
+        try {
+            updated = reconcileTimer.record(() -> tx.execute(status -> {
+                int[] result = jdbc.batchUpdate(RECONCILE_SQL, rows, new int[]{Types.INTEGER, Types.BIGINT, Types.BIGINT});
+                recordShares(rows, result);
+                return result;
+            }));
+        } catch (RuntimeException e) {
+            log.warn("Reconciling reservations of {} products failed, will retry", dirty.size(), e);
+            for (int i = 0; i < dirty.size(); i++) dirty.get(i).restorePending((Integer) rows.get(i)[0]);
+            return;
+        }
+
+        List<StockCounter> conflicts = new ArrayList<>();
+        Set<Long> written = new HashSet<>();
+        org.hibernate.Cache cache = emf.unwrap(SessionFactory.class).getCache();
+        for (int i = 0; i < dirty.size(); i++) {
+            StockCounter c = dirty.get(i);
+            int delta = (Integer) rows.get(i)[0];
+            // No row means the version moved; SUCCESS_NO_INFO (-2) counts as written
+            if (updated[i] == 0) {
+                c.restorePending(delta);
+                conflicts.add(c);
+            } else {
+                c.reserved += delta;
+                c.version++;
+                written.add(c.productId);
+                // Cached Product entities would otherwise keep showing the old available stock
+                cache.evictEntityData(Product.class, c.productId);
+            }
+        }
+        for (StockCounter c : conflicts) rebase(c);
+        if (!written.isEmpty()) events.publishEvent(new StockChangedEvent(written));
+    }
+
+    // Adds the deltas that were written to this instance's shares; caller is in the reconcile transaction
+    private void recordShares(List<Object[]> rows, int[] updated) {
+        List<Object[]> shares = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (updated[i] != 0) shares.add(new Object[]{rows.get(i)[0], instanceId, rows.get(i)[1]});
+        }
+        if (shares.isEmpty()) return;
+        int[] bumped = jdbc.batchUpdate(SHARE_UPDATE_SQL, shares, new int[]{Types.INTEGER, Types.VARCHAR, Types.BIGINT});
+        // Only this instance writes its shares and reconcile is synchronized, so nobody inserts them meanwhile
+        List<Object[]> inserts = new ArrayList<>();
+        for (int i = 0; i < shares.size(); i++) {
+            if (bumped[i] == 0) inserts.add(new Object[]{instanceId, shares.get(i)[2], shares.get(i)[0]});
+        }
+        if (!inserts.isEmpty()) {
+            jdbc.batchUpdate(SHARE_INSERT_SQL, inserts, new int[]{Types.VARCHAR, Types.BIGINT, Types.INTEGER});
+        }
+    }
+
+    private void rebase(StockCounter c) {
+        jdbc.query(LOAD_SQL, rs -> {
+            int stock = rs.getInt(1);
+            int reserved = rs.getInt(2);
+            log.info("Product {} stock changed outside reservations (stock {} -> {}, reserved {} -> {})",
+                    c.productId, c.stock, stock, c.reserved, reserved);
+            c.adjust((stock - c.stock) - (reserved - c.reserved));
+            c.stock = stock;
+            c.reserved = reserved;
+            c.version = rs.getLong(3);
+        }, c.productId);
+    }
+
+    /**
+     * Holds do not survive a restart, so the reservations this instance's previous run wrote are
+     * taken back and rebuilt from the carts this instance changed within the hold TTL, each expiring
+     * a TTL after its cart's last change. Reservations no instance accounts for (written before
+     * shares were kept) are dropped too; those of other instances, and their carts, stay.
+     */
+    @PostConstruct
+    public void restore() {
+        int cleared = tx.execute(status -> {
+            int own = jdbc.update("UPDATE products SET reserved = GREATEST(COALESCE(reserved, 0) - "
+                    + "(SELECT s.units FROM reservation_shares s WHERE s.instance_id = ? AND s.product_id = products.id), 0), "
+                    + "stock_version = COALESCE(stock_version, 0) + 1 "
+                    + "WHERE id IN (SELECT product_id FROM reservation_shares WHERE instance_id = ?)", instanceId, instanceId);
+            jdbc.update("DELETE FROM reservation_shares WHERE instance_id = ?", instanceId);
+            int untracked = jdbc.update("UPDATE products SET reserved = 0, stock_version = COALESCE(stock_version, 0) + 1 "
+                    + "WHERE reserved <> 0 AND NOT EXISTS (SELECT 1 FROM reservation_shares s WHERE s.product_id = products.id)");
+            return own + untracked;
+        });
+        if (!enabled) return;
+
+        Map<String, Map<Long, Integer>> carts = new LinkedHashMap<>();
+        Map<String, Long> changedAt = new HashMap<>();
+        jdbc.query("SELECT c.session_id, c.updated_at, ci.product_id, ci.quantity FROM cart_items ci "
+                 + "JOIN carts c ON c.id = ci.cart_id WHERE c.updated_at > ? AND c.held_by = ? ORDER BY c.updated_at", rs -> {
+            String sessionId = rs.getString(1);
+            carts.computeIfAbsent(sessionId, s -> new HashMap<>()).merge(rs.getLong(3), rs.getInt(4), Integer::sum);
+            changedAt.put(sessionId, rs.getTimestamp(2).getTime());
+        }, new Timestamp(System.currentTimeMillis() - ttlMillis), instanceId);
+
+        int unavailable = 0;
+        for (Map.Entry<String, Map<Long, Integer>> cart : carts.entrySet()) {
+            try {
+                apply(cart.getKey(), cart.getValue(), changedAt.get(cart.getKey()) + ttlMillis);
+            } catch (ResponseStatusException e) {
+                unavailable++;
+            }
+        }
+        if (cleared > 0 || !carts.isEmpty()) {
+            log.info("Reset reservations of instance {} on {} products; restored holds for {} carts ({} no longer in stock)",
+                    instanceId, cleared, carts.size() - unavailable, unavailable);
+        }
+    }
+
+    @PreDestroy
+    public void reconcileOnShutdown() {
+        reconcile();
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.demo.product;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from positive long keys to int counts, without boxing: two parallel arrays,
+ * linear probing and backward-shift deletion. A count that drops to zero removes its key.
+ * Not thread-safe.
+ */
+final class LongCountMap {
+
+    // Key 0 marks an empty slot, which is why keys must be positive
+    private long[] keys;
+    private int[] counts;
+    private int size;
+
+    LongCountMap() {
+        this(8);
+    }
+
+    LongCountMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(long key) {
+        int i = find(key);
+        return i < 0 ? 0 : counts[i];
+    }
+
+    /** Adds delta to the key's count and returns the new count; at zero or below the key is removed. */
+    int add(long key, int delta) {
+        if (key <= 0) throw new IllegalArgumentException("key must be positive: " + key);
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != 0 && keys[i] != key) i = (i + 1) & mask;
+        if (keys[i] == 0) {
+            if (delta <= 0) return 0;
+            keys[i] = key;
+            counts[i] = delta;
+            if (++size * 4 > keys.length * 3) grow();
+            return delta;
+        }
+        int count = counts[i] + delta;
+        if (count > 0) {
+            counts[i] = count;
+            return count;
+        }
+        delete(i);
+        return 0;
+    }
+
+    void remove(long key) {
+        int i = find(key);
+        if (i >= 0) delete(i);
+    }
+
+    /** Calls action for every entry, in no particular order. */
+    void forEach(Entry action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) action.accept(keys[i], counts[i]);
+        }
+    }
+
+    /** Keeps only the n largest counts (ties broken arbitrarily). */
+    void retainTop(int n) {
+        if (size <= n) return;
+        int[] sorted = new int[size];
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) sorted[j++] = counts[i];
+        }
+        Arrays.sort(sorted);
+        int threshold = sorted[size - n];
+        // Entries above the threshold all stay; entries at it stay while there is room
+        int atThreshold = 0;
+        for (int k = size - n; k < size; k++) if (sorted[k] == threshold) atThreshold++;
+        LongCountMap kept = new LongCountMap(n);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == 0 || counts[i] < threshold) continue;
+            if (counts[i] == threshold && atThreshold-- <= 0) continue;
+            kept.add(keys[i], counts[i]);
+        }
+        keys = kept.keys;
+        counts = kept.counts;
+        size = kept.size;
+    }
+
+    @FunctionalInterface
+    interface Entry {
+        void accept(long key, int count);
+    }
+
+    private int find(long key) {
+        if (key <= 0) return -1;
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) return i;
+        }
+        return -1;
+    }
+
+    // Backward-shift deletion: pull later entries of the probe run into the hole so lookups never stop early
+    private void delete(int hole) {
+        int mask = keys.length - 1;
+        int i = hole;
+        for (;;) {
+            i = (i + 1) & mask;
+            if (keys[i] == 0) break;
+            int home = slot(keys[i], mask);
+            // Move keys[i] if its home slot is not within (hole, i] cyclically
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                keys[hole] = keys[i];
+                counts[hole] = counts[i];
+                hole = i;
+            }
+        }
+        keys[hole] = 0;
+        counts[hole] = 0;
+        size--;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int j = slot(oldKeys[i], mask);
+            while (keys[j] != 0) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            counts[j] = oldCounts[i];
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
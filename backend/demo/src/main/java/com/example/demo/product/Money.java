@@ -0,0 +1,28 @@
+package com.example.demo.product;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Prices are kept as long minor units (cents) wherever we do arithmetic on them
+public final class Money {
+
+    private Money() {}
+
+    public static long toCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    // Smallest cent value that is >= amount (inclusive lower bound)
+    public static long ceilCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.CEILING).unscaledValue().longValueExact();
+    }
+
+    // Largest cent value that is <= amount (inclusive upper bound)
+    public static long floorCents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.FLOOR).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
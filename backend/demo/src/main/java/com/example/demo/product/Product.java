@@ -3,13 +3,20 @@ package com.example.demo.product;
 import com.example.demo.category.Category;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.math.BigDecimal;
 import java.time.Instant;
 
 @Entity
 @Table(name = "products")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "products")
 public class Product {
 
+    /** Where a product's current content came from; only upstream products are removed when a full feed omits them. */
+    public enum Source { UPSTREAM, IMPORT }
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -44,6 +51,27 @@ public class Product {
     @Column(nullable = false)
     private Instant lastUpdated = Instant.now();
 
+    // Hash of the upstream fields last written (see FakeStoreProduct.contentHash), so unchanged items are skipped
+    @Column(name = "content_hash", length = 32)
+    private String contentHash;
+
+    // Set when the product disappeared from a full upstream feed; removed products are hidden from the catalog
+    @Column(name = "removed_at")
+    private Instant removedAt;
+
+    // Writer of the current content; null for products created here or written before sources were tracked
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private Source source;
+
+    // Units held by cart reservations, written only by InventoryReservations; stock minus reserved is what can still be sold
+    @Column(insertable = false, updatable = false)
+    private Integer reserved;
+
+    // Bumped with every write of reserved, so the reservation reconciler notices writes it did not make
+    @Column(name = "stock_version", insertable = false, updatable = false)
+    private Long stockVersion;
+
     // getters/setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -65,4 +93,16 @@ public class Product {
     public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
     public Instant getLastUpdated() { return lastUpdated; }
     public void setLastUpdated(Instant lastUpdated) { this.lastUpdated = lastUpdated; }
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+    public Instant getRemovedAt() { return removedAt; }
+    public void setRemovedAt(Instant removedAt) { this.removedAt = removedAt; }
+    public boolean isRemoved() { return removedAt != null; }
+    public Source getSource() { return source; }
+    public void setSource(Source source) { this.source = source; }
+    public Integer getReserved() { return reserved; }
+    public Long getStockVersion() { return stockVersion; }
+    public int getAvailableStock() {
+        return Math.max(0, (stock != null ? stock : 0) - (reserved != null ? reserved : 0));
+    }
 }
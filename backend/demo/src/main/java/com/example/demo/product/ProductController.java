@@ -1,11 +1,19 @@
 package com.example.demo.product;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/products")
@@ -13,9 +21,16 @@ import java.math.BigDecimal;
 public class ProductController {
 
     private final ProductService service;
+    private final ProductExportService exporter;
+    private final TrendingProducts trending;
+    private final RelatedProducts related;
 
-    public ProductController(ProductService service) {
+    public ProductController(ProductService service, ProductExportService exporter, TrendingProducts trending,
+                             RelatedProducts related) {
         this.service = service;
+        this.exporter = exporter;
+        this.trending = trending;
+        this.related = related;
     }
 
     @GetMapping
@@ -28,15 +43,67 @@ public class ProductController {
             @RequestParam(defaultValue = "desc") String order,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "12") int size,
-            @RequestParam(defaultValue = "false") boolean forceSync
+            @RequestParam(defaultValue = "false") boolean forceSync,
+            HttpServletRequest request
     ) {
         Sort sort = order.equalsIgnoreCase("asc")
                 ? Sort.by(sortBy).ascending()
                 : Sort.by(sortBy).descending();
-        return service.list(category, q, minPrice, maxPrice, PageRequest.of(page, size, sort), forceSync);
+        Page<ProductDto> result = service.list(category, q, minPrice, maxPrice, PageRequest.of(page, size, sort), forceSync);
+        // Lets the response cache evict this page only when stock of one of its products changes
+        Set<Long> ids = new HashSet<>(result.getNumberOfElements() * 2);
+        for (ProductDto dto : result.getContent()) ids.add(dto.id());
+        request.setAttribute(CatalogResponseCacheFilter.PRODUCT_IDS, ids);
+        return result;
     }
 
 
+    // Cursor-based alternative for infinite scroll: GET /api/products/scroll?cursor=<nextCursor from previous page>
+    @GetMapping("scroll")
+    public ProductSlice scroll(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String order,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "12") int size
+    ) {
+        return service.scroll(category, q, minPrice, maxPrice, sortBy, order, cursor, size);
+    }
+
+    // Full catalog for feeds and indexing, streamed in one scan instead of paging:
+    // GET /api/products/export?format=csv&category=electronics&since=2025-01-01T00:00:00Z
+    @GetMapping("export")
+    public void export(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) Instant since,
+            HttpServletResponse response
+    ) throws IOException {
+        ProductExportService.Format f = ProductExportService.Format.parse(format);
+        response.setContentType(f.contentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products." + f.extension() + "\"");
+        exporter.export(f, category, since, response.getOutputStream());
+    }
+
+    // Most added to carts lately, for the home page: GET /api/products/trending?window=1h&category=electronics
+    @GetMapping("trending")
+    public List<ProductDto> trending(
+            @RequestParam(defaultValue = "1h") String window,
+            @RequestParam(required = false) String category,
+            @RequestParam(defaultValue = "12") int limit
+    ) {
+        return trending.top(window, category, limit);
+    }
+
+    // Frequently bought together, for the product page: GET /api/products/42/related?limit=8
+    @GetMapping("{id}/related")
+    public List<ProductDto> related(@PathVariable Long id, @RequestParam(defaultValue = "8") int limit) {
+        return related.related(id, limit);
+    }
+
     @GetMapping("{id}")
     public ProductDto get(@PathVariable Long id) {
         return service.find(id);
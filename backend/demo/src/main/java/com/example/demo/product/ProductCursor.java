@@ -0,0 +1,62 @@
+package com.example.demo.product;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Opaque continuation token for keyset pagination: the sort it was issued for plus the
+ * (sortKey, id) of the last row returned. Encoded as base64url so clients treat it as a blob.
+ */
+record ProductCursor(String sortBy, Sort.Direction direction, Object lastKey, Long lastId) {
+
+    static final Set<String> SORT_FIELDS = Set.of("createdAt", "price", "name");
+
+    static ProductCursor after(Product last, String sortBy, Sort.Direction direction) {
+        Object key = switch (sortBy) {
+            case "createdAt" -> last.getCreatedAt();
+            case "price" -> last.getPrice();
+            default -> last.getName();
+        };
+        return new ProductCursor(sortBy, direction, key, last.getId());
+    }
+
+    // Keyset values in sort order, as expected by KeysetScrollPosition
+    Map<String, Object> keys() {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put(sortBy, lastKey);
+        keys.put("id", lastId);
+        return keys;
+    }
+
+    String encode() {
+        String key = lastKey instanceof BigDecimal d ? d.toPlainString() : lastKey.toString();
+        String raw = sortBy + "," + direction + "," + lastId + "," + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ProductCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split(",", 4);
+            String sortBy = parts[0];
+            if (!SORT_FIELDS.contains(sortBy)) throw new IllegalArgumentException(sortBy);
+            Object key = switch (sortBy) {
+                case "createdAt" -> Instant.parse(parts[3]);
+                case "price" -> new BigDecimal(parts[3]);
+                default -> parts[3];
+            };
+            return new ProductCursor(sortBy, Sort.Direction.valueOf(parts[1]), key, Long.valueOf(parts[2]));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.demo.product;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.math.BigDecimal;
+import java.time.Instant;
 
+// Serialized by ProductJsonSerializer; lastUpdated only versions its cached JSON and is not sent
 public record ProductDto(
         Long id,
         String name,
@@ -9,6 +13,6 @@ public record ProductDto(
         String imageUrl,
         String category,
         BigDecimal price,
-        Integer stock
+        Integer stock,
+        @JsonIgnore Instant lastUpdated
 ) {}
-
@@ -0,0 +1,115 @@
+package com.example.demo.product;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Writes the whole catalog, or one category, or what changed since an instant, as NDJSON or CSV
+ * in a single forward-only scan ordered by id. Each product is detached once written, so heap use
+ * stays flat however many rows are exported; a slow client simply blocks the writes (and with
+ * them the cursor) until it catches up.
+ */
+@Service
+public class ProductExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv;charset=UTF-8", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Export format must be ndjson or csv");
+            }
+        }
+    }
+
+    private static final byte[] CSV_HEADER = "id,name,description,imageUrl,category,price,stock\r\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ProductRepository repo;
+    private final EntityManager em;
+
+    public ProductExportService(ProductRepository repo, EntityManager em) {
+        this.repo = repo;
+        this.em = em;
+    }
+
+    /** Streams matching products to target and returns how many were written. */
+    @Transactional(readOnly = true)
+    public long export(Format format, String category, Instant since, OutputStream target) throws IOException {
+        String cat = (category == null || category.isBlank()) ? null : category;
+        OutputStream out = new BufferedOutputStream(target, 64 * 1024);
+        if (format == Format.CSV) out.write(CSV_HEADER);
+
+        long rows = 0;
+        try (Stream<Product> products = repo.streamForExport(cat, since == null ? Instant.EPOCH : since)) {
+            Iterator<Product> it = products.iterator();
+            while (it.hasNext()) {
+                Product p = it.next();
+                ProductDto dto = ProductService.toDto(p);
+                em.detach(p);
+                if (format == Format.CSV) {
+                    out.write(csv(dto).getBytes(StandardCharsets.UTF_8));
+                } else {
+                    ProductJsonSerializer.encode(dto).writeUnquotedUTF8(out);
+                    out.write('\n');
+                }
+                rows++;
+            }
+        }
+        out.flush();
+        return rows;
+    }
+
+    private static String csv(ProductDto p) {
+        StringBuilder line = new StringBuilder(128);
+        line.append(p.id()).append(',');
+        field(line, p.name()).append(',');
+        field(line, p.description()).append(',');
+        field(line, p.imageUrl()).append(',');
+        field(line, p.category()).append(',');
+        BigDecimal price = p.price();
+        if (price != null) line.append(price.toPlainString());
+        line.append(',').append(p.stock()).append("\r\n");
+        return line.toString();
+    }
+
+    // RFC 4180: quote values containing separators, quotes or line breaks, doubling inner quotes
+    private static StringBuilder field(StringBuilder line, String value) {
+        if (value == null) return line;
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) return line.append(value);
+        return line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
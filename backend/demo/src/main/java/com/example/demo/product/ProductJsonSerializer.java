@@ -0,0 +1,182 @@
+package com.example.demo.product;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Writes each product as UTF-8 JSON bytes encoded once and reused until the product changes
+ * (its lastUpdated or stock differ from the cached version). Pages, slices and single products
+ * are then produced by copying those bytes into the response stream instead of re-encoding
+ * every field, which matters most for the long descriptions.
+ * The output is the same as Jackson's default record serialization.
+ */
+@JsonComponent
+public class ProductJsonSerializer extends StdSerializer<ProductDto> {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final int FRAGMENT_OVERHEAD = 96;
+
+    private record Fragment(Instant lastUpdated, Integer stock, RawJson json) {}
+
+    private final Cache<Long, Fragment> cache;
+
+    public ProductJsonSerializer(@Value("${catalog.json-cache.max-bytes:33554432}") long maxBytes) {
+        super(ProductDto.class);
+        // Weighed by encoded size (plus key and bookkeeping), since descriptions vary from a line to pages
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Long id, Fragment f) -> FRAGMENT_OVERHEAD + f.json().asUnquotedUTF8().length)
+                .build();
+    }
+
+    @Override
+    public void serialize(ProductDto dto, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeRawValue(fragment(dto));
+    }
+
+    SerializableString fragment(ProductDto dto) {
+        if (dto.id() == null || dto.lastUpdated() == null) return encode(dto);
+        Fragment cached = cache.getIfPresent(dto.id());
+        if (cached != null && cached.lastUpdated().equals(dto.lastUpdated()) && Objects.equals(cached.stock(), dto.stock())) {
+            return cached.json();
+        }
+        RawJson json = encode(dto);
+        cache.put(dto.id(), new Fragment(dto.lastUpdated(), dto.stock(), json));
+        return json;
+    }
+
+    // Uncached encoding, for callers such as the export that touch every product once
+    static RawJson encode(ProductDto dto) {
+        ByteArrayBuilder out = new ByteArrayBuilder(256 + (dto.description() == null ? 0 : dto.description().length()));
+        try (JsonGenerator g = FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            g.writeStartObject();
+            if (dto.id() == null) g.writeNullField("id"); else g.writeNumberField("id", dto.id());
+            g.writeStringField("name", dto.name());
+            g.writeStringField("description", dto.description());
+            g.writeStringField("imageUrl", dto.imageUrl());
+            g.writeStringField("category", dto.category());
+            g.writeFieldName("price");
+            if (dto.price() == null) g.writeNull(); else g.writeNumber(dto.price());
+            if (dto.stock() == null) g.writeNullField("stock"); else g.writeNumberField("stock", dto.stock());
+            g.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new RawJson(out.toByteArray());
+    }
+
+    // Already-encoded JSON handed to JsonGenerator.writeRawValue; UTF-8 generators copy the bytes as is
+    static final class RawJson implements SerializableString {
+        private final byte[] utf8;
+
+        RawJson(byte[] utf8) {
+            this.utf8 = utf8;
+        }
+
+        @Override
+        public String getValue() {
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int charLength() {
+            return getValue().length();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return getValue().toCharArray();
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return utf8;
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return utf8;
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            return appendUnquotedUTF8(buffer, offset);
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            return appendUnquoted(buffer, offset);
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            if (offset + utf8.length > buffer.length) return -1;
+            System.arraycopy(utf8, 0, buffer, offset, utf8.length);
+            return utf8.length;
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            String value = getValue();
+            if (offset + value.length() > buffer.length) return -1;
+            value.getChars(0, value.length(), buffer, offset);
+            return value.length();
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            return writeUnquotedUTF8(out);
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(utf8);
+            return utf8.length;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) {
+            return putUnquotedUTF8(buffer);
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) {
+            if (buffer.remaining() < utf8.length) return -1;
+            buffer.put(utf8);
+            return utf8.length;
+        }
+
+        @Override
+        public String toString() {
+            return getValue();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RawJson other && Arrays.equals(utf8, other.utf8);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(utf8);
+        }
+    }
+}
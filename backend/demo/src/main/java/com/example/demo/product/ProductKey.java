@@ -0,0 +1,6 @@
+package com.example.demo.product;
+
+import java.time.Instant;
+
+// Lightweight key and content hash so bulk sync can match and diff upstream items without loading entities
+public record ProductKey(Long id, Long externalId, String contentHash, Instant removedAt, Product.Source source) {}
@@ -1,15 +1,24 @@
 package com.example.demo.product;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
 
     // Derived queries
     Page<Product> findByCategory_NameIgnoreCase(String name, Pageable pageable);
@@ -32,4 +41,105 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     @Query("SELECT p FROM Product p WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :query, '%'))")
     Page<Product> searchByName(@Param("query") String query, Pageable pageable);
+
+    // DTO projections for the listing endpoints: one statement per page (plus the count),
+    // with the category name joined in instead of lazily loaded per row. Removed products never show,
+    // and stock is what is left after cart reservations.
+    String DTO = "new com.example.demo.product.ProductDto(p.id, p.name, p.description, p.imageUrl, c.name, p.price, GREATEST(COALESCE(p.stock, 0) - COALESCE(p.reserved, 0), 0), p.lastUpdated)";
+
+    @Query(value = "SELECT " + DTO + " FROM Product p LEFT JOIN p.category c WHERE p.price BETWEEN :min AND :max AND p.removedAt IS NULL",
+           countQuery = "SELECT COUNT(p) FROM Product p WHERE p.price BETWEEN :min AND :max AND p.removedAt IS NULL")
+    Page<ProductDto> findDtosByPriceBetween(@Param("min") BigDecimal min,
+                                            @Param("max") BigDecimal max,
+                                            Pageable pageable);
+
+    @Query(value = "SELECT " + DTO + " FROM Product p JOIN p.category c"
+                 + " WHERE LOWER(c.name) = LOWER(:category) AND p.price BETWEEN :min AND :max AND p.removedAt IS NULL",
+           countQuery = "SELECT COUNT(p) FROM Product p JOIN p.category c"
+                 + " WHERE LOWER(c.name) = LOWER(:category) AND p.price BETWEEN :min AND :max AND p.removedAt IS NULL")
+    Page<ProductDto> findDtosByCategoryAndPriceBetween(@Param("category") String category,
+                                                       @Param("min") BigDecimal min,
+                                                       @Param("max") BigDecimal max,
+                                                       Pageable pageable);
+
+    @Query(value = "SELECT " + DTO + " FROM Product p LEFT JOIN p.category c"
+                 + " WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :q, '%')) AND p.price BETWEEN :min AND :max AND p.removedAt IS NULL",
+           countQuery = "SELECT COUNT(p) FROM Product p"
+                 + " WHERE LOWER(p.name) LIKE LOWER(CONCAT('%', :q, '%')) AND p.price BETWEEN :min AND :max AND p.removedAt IS NULL")
+    Page<ProductDto> findDtosByNameAndPriceBetween(@Param("q") String q,
+                                                   @Param("min") BigDecimal min,
+                                                   @Param("max") BigDecimal max,
+                                                   Pageable pageable);
+
+    @Query(value = "SELECT " + DTO + " FROM Product p JOIN p.category c"
+                 + " WHERE LOWER(c.name) = LOWER(:category) AND LOWER(p.name) LIKE LOWER(CONCAT('%', :q, '%'))"
+                 + " AND p.price BETWEEN :min AND :max AND p.removedAt IS NULL",
+           countQuery = "SELECT COUNT(p) FROM Product p JOIN p.category c"
+                 + " WHERE LOWER(c.name) = LOWER(:category) AND LOWER(p.name) LIKE LOWER(CONCAT('%', :q, '%'))"
+                 + " AND p.price BETWEEN :min AND :max AND p.removedAt IS NULL")
+    Page<ProductDto> findDtosByCategoryAndNameAndPriceBetween(@Param("category") String category,
+                                                              @Param("q") String q,
+                                                              @Param("min") BigDecimal min,
+                                                              @Param("max") BigDecimal max,
+                                                              Pageable pageable);
+
+    @Query("SELECT " + DTO + " FROM Product p LEFT JOIN p.category c WHERE p.id = :id AND p.removedAt IS NULL")
+    Optional<ProductDto> findDtoById(@Param("id") Long id);
+
+    // Products picked by TrendingProducts, in no particular order
+    @Query("SELECT " + DTO + " FROM Product p LEFT JOIN p.category c WHERE p.id IN :ids AND p.removedAt IS NULL")
+    List<ProductDto> findDtosByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Search hits from ProductSearchIndex that pass the remaining listing filters, with their sort keys
+    String SORT_KEY = "new com.example.demo.product.ProductSortKey(p.id, p.name, p.price, p.createdAt)";
+
+    @Query("SELECT " + SORT_KEY + " FROM Product p LEFT JOIN p.category c"
+         + " WHERE p.id IN :ids AND p.price BETWEEN :min AND :max AND p.removedAt IS NULL"
+         + " AND (:category IS NULL OR LOWER(c.name) = LOWER(:category))")
+    List<ProductSortKey> findHitSortKeys(@Param("ids") Collection<Long> ids,
+                                         @Param("category") String category,
+                                         @Param("min") BigDecimal min,
+                                         @Param("max") BigDecimal max);
+
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.id IN :ids")
+    List<Product> findAllWithCategoryByIdIn(@Param("ids") Collection<Long> ids);
+
+    String KEY = "new com.example.demo.product.ProductKey(p.id, p.externalId, p.contentHash, p.removedAt, p.source)";
+
+    @Query("SELECT " + KEY + " FROM Product p WHERE p.externalId IS NOT NULL")
+    List<ProductKey> findAllKeys();
+
+    // Upstream products currently in the catalog, to find those a full feed no longer lists; imported ones are left alone
+    @Query("SELECT " + KEY + " FROM Product p WHERE p.externalId IS NOT NULL AND p.removedAt IS NULL"
+         + " AND p.source = com.example.demo.product.Product.Source.UPSTREAM")
+    List<ProductKey> findLiveKeys();
+
+    @Query("SELECT " + KEY + " FROM Product p WHERE p.externalId IN :externalIds")
+    List<ProductKey> findKeysByExternalIdIn(@Param("externalIds") Collection<Long> externalIds);
+
+    @Modifying
+    @Query("UPDATE Product p SET p.removedAt = :now, p.lastUpdated = :now WHERE p.id IN :ids")
+    int markRemoved(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+    // Whole live catalog in one query, used to (re)build in-memory read models
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.category WHERE p.removedAt IS NULL ORDER BY p.id")
+    List<Product> findAllWithCategory();
+
+    // Forward-only cursor for exports: rows arrive EXPORT_FETCH_SIZE at a time, are loaded read-only
+    // and bypass the second-level cache so a full scan does not evict the hot entries
+    String EXPORT_FETCH_SIZE = "500";
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_MODE, value = "IGNORE")
+    })
+    @Query("""
+         SELECT p FROM Product p LEFT JOIN FETCH p.category c
+         WHERE (:category IS NULL OR LOWER(c.name) = LOWER(:category))
+           AND p.lastUpdated >= :since
+           AND p.removedAt IS NULL
+         ORDER BY p.id
+        """)
+    Stream<Product> streamForExport(@Param("category") String category, @Param("since") Instant since);
 }
@@ -0,0 +1,239 @@
+package com.example.demo.product;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Tokenized, case-folded inverted index over product name and description.
+ * Query tokens match indexed terms exactly, by prefix, or as a substring (via trigrams),
+ * every query token must match, and hits are ranked by a weighted score where name
+ * matches count more than description matches.
+ * Writes are serialized; reads go straight to the concurrent maps.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final int NAME_WEIGHT = 4;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final int EXACT_BOOST = 3;
+    private static final int PREFIX_BOOST = 2;
+    private static final int SUBSTRING_BOOST = 1;
+    private static final int GRAM = 3;
+    // Shorter query tokens (the "s" of "men's") are dropped when the query has longer ones:
+    // they would prefix-match most of the dictionary without narrowing anything
+    private static final int MIN_TOKEN = 2;
+
+    private final ProductRepository repo;
+    private final boolean enabled;
+    private final int maxHits;
+    private final int maxCandidates;
+
+    // term -> (product id -> weight of the term in that product)
+    private final ConcurrentSkipListMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+    // trigram -> terms containing it
+    private final ConcurrentHashMap<String, Set<String>> grams = new ConcurrentHashMap<>();
+    // product id -> terms currently indexed for it, so updates can drop stale postings
+    private final ConcurrentHashMap<Long, Set<String>> documents = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    public ProductSearchIndex(ProductRepository repo,
+                              @Value("${catalog.search.enabled:true}") boolean enabled,
+                              @Value("${catalog.search.max-hits:1000}") int maxHits,
+                              @Value("${catalog.search.max-candidates:5000}") int maxCandidates) {
+        this.repo = repo;
+        this.enabled = enabled;
+        this.maxHits = maxHits;
+        this.maxCandidates = maxCandidates;
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /** Most hit ids callers should send to the database in one IN list. */
+    public int getMaxHits() {
+        return maxHits;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void onStartup() {
+        if (!enabled) return;
+        for (Product p : repo.findAll()) {
+            if (!p.isRemoved()) index(p.getId(), p.getName(), p.getDescription());
+        }
+        ready = true;
+    }
+
+    // Index once the surrounding transaction commits, so rolled back writes never show up
+    public void indexAfterCommit(Long id, String name, String description) {
+        if (!enabled) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    index(id, name, description);
+                }
+            });
+        } else {
+            index(id, name, description);
+        }
+    }
+
+    public void removeAfterCommit(Long id) {
+        if (!enabled) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(id);
+                }
+            });
+        } else {
+            remove(id);
+        }
+    }
+
+    public synchronized void index(Long id, String name, String description) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String t : tokenize(name)) weights.merge(t, NAME_WEIGHT, Integer::sum);
+        for (String t : tokenize(description)) weights.merge(t, DESCRIPTION_WEIGHT, Integer::sum);
+
+        Set<String> previous = documents.put(id, weights.keySet());
+        if (previous != null) {
+            for (String term : previous) {
+                if (!weights.containsKey(term)) unpost(term, id);
+            }
+        }
+        weights.forEach((term, weight) -> {
+            postings.computeIfAbsent(term, k -> {
+                for (String g : grams(k)) grams.computeIfAbsent(g, x -> ConcurrentHashMap.newKeySet()).add(k);
+                return new ConcurrentHashMap<>();
+            }).put(id, weight);
+        });
+    }
+
+    public synchronized void remove(Long id) {
+        Set<String> previous = documents.remove(id);
+        if (previous != null) previous.forEach(term -> unpost(term, id));
+    }
+
+    /**
+     * Product ids matching every token of the query, best match first, at most max-candidates.
+     * The cap keeps broad terms as cheap to filter as narrow ones: callers need at most
+     * max-candidates / max-hits round trips, whatever the term matches.
+     */
+    public List<Long> search(String query) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) return List.of();
+        List<String> significant = tokens.stream().filter(t -> t.length() >= MIN_TOKEN).toList();
+        if (!significant.isEmpty()) tokens = significant;
+
+        Map<Long, Integer> scores = null;
+        for (String token : tokens) {
+            Map<Long, Integer> tokenScores = scoreToken(token);
+            if (scores == null) {
+                scores = tokenScores;
+            } else {
+                scores.keySet().retainAll(tokenScores.keySet());
+                scores.replaceAll((id, s) -> s + tokenScores.get(id));
+            }
+            if (scores.isEmpty()) return List.of();
+        }
+
+        // Best first: higher score, then newer (higher) id. Only the best maxCandidates are kept,
+        // in a heap whose head is the worst of them
+        Comparator<Map.Entry<Long, Integer>> best = Map.Entry.<Long, Integer>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder()));
+        PriorityQueue<Map.Entry<Long, Integer>> top = new PriorityQueue<>(best.reversed());
+        for (Map.Entry<Long, Integer> e : scores.entrySet()) {
+            if (top.size() < maxCandidates) {
+                top.add(e);
+            } else if (best.compare(e, top.peek()) < 0) {
+                top.poll();
+                top.add(e);
+            }
+        }
+        List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(top);
+        ranked.sort(best);
+        List<Long> ids = new ArrayList<>(ranked.size());
+        for (Map.Entry<Long, Integer> e : ranked) ids.add(e.getKey());
+        return ids;
+    }
+
+    private Map<Long, Integer> scoreToken(String token) {
+        Map<Long, Integer> scores = new HashMap<>();
+        Map<Long, Integer> exact = postings.get(token);
+        if (exact != null) exact.forEach((id, w) -> scores.merge(id, w * EXACT_BOOST, Math::max));
+
+        for (Map.Entry<String, Map<Long, Integer>> e
+                : postings.subMap(token, false, token + Character.MAX_VALUE, false).entrySet()) {
+            e.getValue().forEach((id, w) -> scores.merge(id, w * PREFIX_BOOST, Math::max));
+        }
+
+        if (token.length() >= GRAM) {
+            for (String term : substringCandidates(token)) {
+                if (term.startsWith(token)) continue; // already scored as exact/prefix
+                Map<Long, Integer> docs = postings.get(term);
+                if (docs != null) docs.forEach((id, w) -> scores.merge(id, w * SUBSTRING_BOOST, Math::max));
+            }
+        }
+        return scores;
+    }
+
+    // Terms containing every trigram of the token, then verified with a real substring check
+    private List<String> substringCandidates(String token) {
+        List<Set<String>> sets = new ArrayList<>();
+        for (String g : grams(token)) {
+            Set<String> terms = grams.get(g);
+            if (terms == null) return List.of();
+            sets.add(terms);
+        }
+        sets.sort(Comparator.comparingInt(Set::size));
+        Set<String> candidates = new HashSet<>(sets.get(0));
+        for (int i = 1; i < sets.size() && !candidates.isEmpty(); i++) candidates.retainAll(sets.get(i));
+        return candidates.stream().filter(t -> t.contains(token)).toList();
+    }
+
+    private void unpost(String term, Long id) {
+        Map<Long, Integer> docs = postings.get(term);
+        if (docs == null) return;
+        docs.remove(id);
+        if (docs.isEmpty()) {
+            postings.remove(term);
+            for (String g : grams(term)) {
+                Set<String> terms = grams.get(g);
+                if (terms != null) {
+                    terms.remove(term);
+                    if (terms.isEmpty()) grams.remove(g);
+                }
+            }
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) return List.of();
+        List<String> tokens = new ArrayList<>();
+        for (String t : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!t.isEmpty()) tokens.add(t);
+        }
+        return tokens;
+    }
+
+    private static Set<String> grams(String term) {
+        if (term.length() < GRAM) return Set.of();
+        Set<String> out = new HashSet<>();
+        for (int i = 0; i + GRAM <= term.length(); i++) out.add(term.substring(i, i + GRAM));
+        return out;
+    }
+}
@@ -1,69 +1,219 @@
 package com.example.demo.product;
 
 import org.springframework.data.domain.*;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.util.*;
 
 @Service
 public class ProductService {
 
     private final ProductRepository repo;
-    private final ProductSyncService sync;
+    private final SyncCoordinator sync;
     private final ExternalProductClient external;
+    private final CatalogReadModel readModel;
+    private final ProductSearchIndex searchIndex;
 
-    public ProductService(ProductRepository repo, ProductSyncService sync, ExternalProductClient external) {
+    // Pseudo sort property: order search results by index score
+    static final String RELEVANCE = "relevance";
+
+    public ProductService(ProductRepository repo, SyncCoordinator sync, ExternalProductClient external,
+                          CatalogReadModel readModel, ProductSearchIndex searchIndex) {
         this.repo = repo;
         this.sync = sync;
         this.external = external;
+        this.readModel = readModel;
+        this.searchIndex = searchIndex;
     }
 
-    // Read from DB. If DB is empty and no filters, do a quick sync once.
+    // Read from DB. Syncs only ever run in the background: forceSync starts (or joins) one and
+    // answers with what we have now, and an empty unfiltered catalog kicks one off the same way.
     public Page<ProductDto> list(String category, String q,
                                  BigDecimal minPrice, BigDecimal maxPrice,
                                  Pageable pageable, boolean forceSync) {
         if (forceSync) {
-            sync.syncAll(category);
+            sync.refresh(category);
         }
+        pageable = caseInsensitiveNames(pageable);
 
-        Page<Product> page;
+        // Text search goes through the inverted index once it has been loaded
+        List<Long> hits = (q != null && !q.isBlank() && searchIndex.isReady()) ? searchIndex.search(q) : null;
+        if (hits == null && pageable.getSort().getOrderFor(RELEVANCE) != null) {
+            pageable = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by("createdAt").descending());
+        }
+
+        // Serve from the in-memory catalog when enabled; an empty unfiltered catalog still
+        // goes through the repository path below so the first-run background sync kicks in.
+        Optional<Page<ProductDto>> inMemory = hits != null
+                ? readModel.queryHits(category, hits, minPrice, maxPrice, pageable)
+                : readModel.query(category, q, minPrice, maxPrice, pageable);
+        if (inMemory.isPresent() && (inMemory.get().getTotalElements() > 0 || hasFilters(category, q))) {
+            return inMemory.get();
+        }
 
         // price range defaults
         BigDecimal min = (minPrice == null) ? BigDecimal.ZERO : minPrice;
         BigDecimal max = (maxPrice == null) ? new BigDecimal("1000000000") : maxPrice;
 
-        if (category != null && !category.isBlank() && q != null && !q.isBlank()) {
-            // both category and search
-            page = repo.findByNameContainingIgnoreCaseAndPriceBetween(q, min, max, pageable)
-                    .map(p -> p) // placeholder, will filter category below if necessary
-                    .map(p -> p); // no-op
-            // If you want combined filter exactly: write a custom query or filter after fetching page content
-        } else if (category != null && !category.isBlank()) {
-            page = repo.findByCategory_NameIgnoreCaseAndPriceBetween(category, min, max, pageable);
-        } else if (q != null && !q.isBlank()) {
-            page = repo.findByNameContainingIgnoreCaseAndPriceBetween(q, min, max, pageable);
-        } else {
-            page = repo.findByPriceBetween(min, max, pageable);
-            if (page.isEmpty() && !forceSync) {
-                // convenience: first run auto-sync
-                sync.syncAll(null);
-                page = repo.findByPriceBetween(min, max, pageable);
-            }
+        if (hits != null) {
+            return searchPage(category, hits, min, max, pageable);
+        }
+
+        boolean byCategory = category != null && !category.isBlank();
+        boolean byName = q != null && !q.isBlank();
+        if (byCategory && byName) {
+            return repo.findDtosByCategoryAndNameAndPriceBetween(category, q, min, max, pageable);
+        } else if (byCategory) {
+            return repo.findDtosByCategoryAndPriceBetween(category, min, max, pageable);
+        } else if (byName) {
+            return repo.findDtosByNameAndPriceBetween(q, min, max, pageable);
+        }
+
+        Page<ProductDto> page = repo.findDtosByPriceBetween(min, max, pageable);
+        if (page.isEmpty() && page.getNumber() == 0 && !forceSync) {
+            // convenience: first run sync, served on a later request once it lands
+            sync.refreshIfIdle(null);
+        }
+        return page;
+    }
+
+
+    private Page<ProductDto> searchPage(String category, List<Long> hits,
+                                        BigDecimal min, BigDecimal max, Pageable pageable) {
+        if (hits.isEmpty()) return Page.empty(pageable);
+
+        // Every hit is filtered before paging, so category and price filters never lose matches to a cutoff
+        List<ProductSortKey> matching = filterHits(category, hits, min, max);
+        if (pageable.getSort().getOrderFor(RELEVANCE) == null) {
+            matching = matching.stream().sorted(hitOrder(pageable.getSort())).toList();
+        }
+        int from = (int) Math.min(pageable.getOffset(), matching.size());
+        List<Long> pageIds = matching.subList(from, Math.min(from + pageable.getPageSize(), matching.size()))
+                .stream().map(ProductSortKey::id).toList();
+        if (pageIds.isEmpty()) return new PageImpl<>(List.of(), pageable, matching.size());
+
+        Map<Long, ProductDto> byId = new HashMap<>();
+        for (ProductDto dto : repo.findDtosByIdIn(pageIds)) byId.put(dto.id(), dto);
+        List<ProductDto> content = pageIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new PageImpl<>(content, pageable, matching.size());
+    }
+
+    // Hits passing the filters, in rank order; IN lists are chunked to stay under driver bind-parameter limits
+    private List<ProductSortKey> filterHits(String category, List<Long> hits, BigDecimal min, BigDecimal max) {
+        String cat = (category == null || category.isBlank()) ? null : category;
+        int chunk = searchIndex.getMaxHits();
+        Map<Long, ProductSortKey> byId = new HashMap<>();
+        for (int from = 0; from < hits.size(); from += chunk) {
+            List<Long> ids = hits.subList(from, Math.min(from + chunk, hits.size()));
+            for (ProductSortKey key : repo.findHitSortKeys(ids, cat, min, max)) byId.put(key.id(), key);
         }
+        List<ProductSortKey> out = new ArrayList<>(byId.size());
+        for (Long id : hits) {
+            ProductSortKey key = byId.get(id);
+            if (key != null) out.add(key);
+        }
+        return out;
+    }
+
+    // Same orderings as the listing queries: names case-insensitive, missing values last when ascending
+    private static Comparator<ProductSortKey> hitOrder(Sort sort) {
+        Comparator<ProductSortKey> order = null;
+        for (Sort.Order o : sort) {
+            Comparator<ProductSortKey> c = switch (o.getProperty()) {
+                case "id" -> Comparator.comparing(ProductSortKey::id);
+                case "name" -> Comparator.comparing(ProductSortKey::name, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+                case "price" -> Comparator.comparing(ProductSortKey::price, Comparator.nullsLast(Comparator.naturalOrder()));
+                case "createdAt" -> Comparator.comparing(ProductSortKey::createdAt, Comparator.nullsLast(Comparator.naturalOrder()));
+                default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Search results can be sorted by relevance, createdAt, name, price or id");
+            };
+            if (o.isDescending()) c = c.reversed();
+            order = order == null ? c : order.thenComparing(c);
+        }
+        Comparator<ProductSortKey> byId = Comparator.comparing(ProductSortKey::id);
+        return order == null ? byId : order.thenComparing(byId);
+    }
 
-        return page.map(this::toDto);
+    // Names sort case-insensitively on every path, so the read model and the database agree
+    private static Pageable caseInsensitiveNames(Pageable pageable) {
+        Sort.Order byName = pageable.getSort().getOrderFor("name");
+        if (byName == null || byName.isIgnoreCase()) return pageable;
+        Sort sort = Sort.by(pageable.getSort().stream()
+                .map(o -> o.getProperty().equals("name") ? o.ignoreCase() : o)
+                .toList());
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
     }
 
+    private static boolean hasFilters(String category, String q) {
+        return (category != null && !category.isBlank()) || (q != null && !q.isBlank());
+    }
+
+
+    /**
+     * Keyset (seek) pagination: each page continues after the (sortKey, id) of the previous one,
+     * so deep pages cost the same as the first and no count query is issued.
+     */
+    public ProductSlice scroll(String category, String q,
+                               BigDecimal minPrice, BigDecimal maxPrice,
+                               String sortBy, String order, String cursor, int size) {
+        if (size < 1) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size must be at least 1");
+        ProductCursor after = (cursor == null || cursor.isBlank()) ? null : ProductCursor.decode(cursor);
+        String field = after != null ? after.sortBy() : sortBy;
+        if (!ProductCursor.SORT_FIELDS.contains(field)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor pagination supports sortBy " + ProductCursor.SORT_FIELDS);
+        }
+        Sort.Direction direction = after != null ? after.direction()
+                : order.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
+
+        BigDecimal min = (minPrice == null) ? BigDecimal.ZERO : minPrice;
+        BigDecimal max = (maxPrice == null) ? new BigDecimal("1000000000") : maxPrice;
+        Specification<Product> spec = ProductSpecifications.fetchCategory()
+                .and(ProductSpecifications.notRemoved())
+                .and(ProductSpecifications.priceBetween(min, max));
+        if (category != null && !category.isBlank()) {
+            spec = spec.and(ProductSpecifications.inCategory(category));
+        }
+        if (q != null && !q.isBlank()) {
+            if (searchIndex.isReady()) {
+                // Filtered first, so the best max-hits matches that pass the filters are scrolled through
+                List<Long> hits = filterHits(category, searchIndex.search(q), min, max).stream()
+                        .limit(searchIndex.getMaxHits())
+                        .map(ProductSortKey::id)
+                        .toList();
+                if (hits.isEmpty()) return new ProductSlice(List.of(), null, false);
+                spec = spec.and(ProductSpecifications.idIn(hits));
+            } else {
+                spec = spec.and(ProductSpecifications.nameContains(q));
+            }
+        }
+
+        Sort sort = Sort.by(direction, field).and(Sort.by(direction, "id"));
+        ScrollPosition position = after == null ? ScrollPosition.keyset() : ScrollPosition.forward(after.keys());
+        Window<Product> window = repo.findBy(spec, query -> query
+                .sortBy(sort)
+                .limit(size)
+                .scroll(position));
+
+        List<Product> rows = window.getContent();
+        String next = window.hasNext() && !rows.isEmpty()
+                ? ProductCursor.after(rows.get(rows.size() - 1), field, direction).encode()
+                : null;
+        return new ProductSlice(rows.stream().map(ProductService::toDto).toList(), next, next != null);
+    }
 
     public ProductDto find(Long id) {
-        Product p = repo.findById(id).orElseThrow(() ->
+        return repo.findDtoById(id).orElseThrow(() ->
                 new ResponseStatusException(HttpStatus.NOT_FOUND));
-        return toDto(p);
     }
 
-    private ProductDto toDto(Product p) {
+    static ProductDto toDto(Product p) {
         return new ProductDto(
                 p.getId(),
                 p.getName(),
@@ -71,7 +221,8 @@ public class ProductService {
                 p.getImageUrl(),
                 p.getCategory() != null ? p.getCategory().getName() : null,
                 p.getPrice(),
-                p.getStock() != null ? p.getStock() : 0
+                p.getAvailableStock(),
+                p.getLastUpdated()
         );
     }
 }
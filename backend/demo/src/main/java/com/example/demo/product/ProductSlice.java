@@ -0,0 +1,10 @@
+package com.example.demo.product;
+
+import java.util.List;
+
+// One page of a keyset scroll; pass nextCursor back to continue, no total count is computed
+public record ProductSlice(
+        List<ProductDto> content,
+        String nextCursor,
+        boolean hasNext
+) {}
@@ -0,0 +1,7 @@
+package com.example.demo.product;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+// Just the columns search results can be sorted by, so hits are filtered and ordered without loading entities
+public record ProductSortKey(Long id, String name, BigDecimal price, Instant createdAt) {}
@@ -0,0 +1,42 @@
+package com.example.demo.product;
+
+import jakarta.persistence.criteria.JoinType;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+
+// Composable filters for the listing queries that are not expressed as derived methods
+final class ProductSpecifications {
+
+    private ProductSpecifications() {}
+
+    // Fetch-joins the category so mapping to ProductDto does not lazy-load it row by row
+    static Specification<Product> fetchCategory() {
+        return (root, query, cb) -> {
+            if (query.getResultType() == Product.class) root.fetch("category", JoinType.LEFT);
+            return null;
+        };
+    }
+
+    static Specification<Product> notRemoved() {
+        return (root, query, cb) -> cb.isNull(root.get("removedAt"));
+    }
+
+    static Specification<Product> priceBetween(BigDecimal min, BigDecimal max) {
+        return (root, query, cb) -> cb.between(root.get("price"), min, max);
+    }
+
+    static Specification<Product> inCategory(String category) {
+        return (root, query, cb) -> cb.equal(
+                cb.lower(root.join("category", JoinType.INNER).get("name")), category.toLowerCase());
+    }
+
+    static Specification<Product> nameContains(String q) {
+        return (root, query, cb) -> cb.like(cb.lower(root.get("name")), "%" + q.toLowerCase() + "%");
+    }
+
+    static Specification<Product> idIn(Collection<Long> ids) {
+        return (root, query, cb) -> root.get("id").in(ids);
+    }
+}
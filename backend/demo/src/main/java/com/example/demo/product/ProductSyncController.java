@@ -1,5 +1,6 @@
 package com.example.demo.product;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -9,15 +10,68 @@ import org.springframework.web.bind.annotation.*;
 public class ProductSyncController {
 
     private final ProductSyncService syncService;
+    private final SyncCoordinator coordinator;
+    private final SyncJobEngine jobs;
+    private final CatalogFileImporter importer;
 
-    public ProductSyncController(ProductSyncService syncService) {
+    public ProductSyncController(ProductSyncService syncService, SyncCoordinator coordinator, SyncJobEngine jobs,
+                                 CatalogFileImporter importer) {
         this.syncService = syncService;
+        this.coordinator = coordinator;
+        this.jobs = jobs;
+        this.importer = importer;
     }
 
-    // Trigger: GET /api/sync/products or /api/sync/products?category=electronics
+    // Trigger: POST /api/sync/products or /api/sync/products?category=electronics
+    // Joins a sync already running for the category; wait=false returns 202 right away
     @PostMapping("/products")
-    public ResponseEntity<String> syncProducts(@RequestParam(required = false) String category) {
-        int count = syncService.syncAll(category);
+    public ResponseEntity<String> syncProducts(@RequestParam(required = false) String category,
+                                               @RequestParam(defaultValue = "true") boolean wait) {
+        var job = coordinator.refresh(category);
+        if (!wait) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body("Sync started");
+        }
+        int count = job.join();
         return ResponseEntity.ok("Synced/updated: " + count + " products");
     }
+
+    // Batched variant for large feeds; responds with counts and per-phase timings
+    @PostMapping("/products/bulk")
+    public SyncResult syncProductsBulk(@RequestParam(required = false) String category) {
+        return syncService.syncAllBulk(category);
+    }
+
+    @GetMapping("/status")
+    public SyncStatus status() {
+        return coordinator.status();
+    }
+
+    // Partitioned full sync: starts a job (or returns the running one) and reports its progress
+    @PostMapping("/jobs")
+    public ResponseEntity<SyncJobStatus> startJob() {
+        jobs.start();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobs.status().orElseThrow());
+    }
+
+    // Progress, throughput and per-partition durations of the latest job
+    @GetMapping("/jobs/current")
+    public ResponseEntity<SyncJobStatus> currentJob() {
+        return ResponseEntity.of(jobs.status());
+    }
+
+    // Import a local NDJSON/CSV file from catalog.import.dir: POST /api/sync/imports?file=supplier.csv
+    // Re-posting the same file resumes an interrupted import; offset restarts it at a given byte
+    @PostMapping("/imports")
+    public ResponseEntity<ImportStatus> startImport(@RequestParam String file,
+                                                    @RequestParam(required = false) String format,
+                                                    @RequestParam(required = false) Long offset) {
+        importer.start(file, format, offset);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(importer.status().orElseThrow());
+    }
+
+    // Bytes and records committed, throughput and rejected records of the latest import
+    @GetMapping("/imports/current")
+    public ResponseEntity<ImportStatus> currentImport() {
+        return ResponseEntity.of(importer.status());
+    }
 }
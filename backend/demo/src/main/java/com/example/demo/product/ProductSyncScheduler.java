@@ -1,24 +1,84 @@
 package com.example.demo.product;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Periodic full sync with jitter, so instances don't all hit the upstream at the same moment,
+ * and exponential backoff after failures (capped at the regular interval).
+ * A job left unfinished by a previous run is resumed shortly after startup.
+ */
 @Component
 public class ProductSyncScheduler {
 
-    private final ProductSyncService sync;
+    private static final Logger log = LoggerFactory.getLogger(ProductSyncScheduler.class);
+
+    private final SyncCoordinator sync;
+    private final SyncJobEngine engine;
+    private final long intervalMillis;
+    private final long retryBackoffMillis;
+    private final double jitter;
+
+    private volatile long nextRunAt;
+    private int failures;
 
-    public ProductSyncScheduler(ProductSyncService sync) {
+    public ProductSyncScheduler(SyncCoordinator sync, SyncJobEngine engine,
+                                @Value("${catalog.sync.interval:1h}") Duration interval,
+                                @Value("${catalog.sync.retry-backoff:1m}") Duration retryBackoff,
+                                @Value("${catalog.sync.jitter:0.1}") double jitter) {
         this.sync = sync;
+        this.engine = engine;
+        this.intervalMillis = interval.toMillis();
+        this.retryBackoffMillis = retryBackoff.toMillis();
+        this.jitter = jitter;
+        this.nextRunAt = System.currentTimeMillis() + jittered(intervalMillis);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        if (engine.hasUnfinishedCheckpoints()) {
+            nextRunAt = System.currentTimeMillis() + jittered(retryBackoffMillis);
+        }
     }
 
-    // Every hour
-    @Scheduled(cron = "0 0 * * * *")
-    public void hourlySync() {
+    // Cheap tick; the actual schedule is nextRunAt. The sync runs on the coordinator's workers and is
+    // not waited for here, so the shared scheduler thread stays free for flushes, reconciles and sweeps
+    @Scheduled(fixedDelayString = "${catalog.sync.tick-ms:10000}")
+    public void tick() {
+        if (System.currentTimeMillis() < nextRunAt) return;
+        // No further run until this one has finished and set the next time
+        nextRunAt = Long.MAX_VALUE;
         try {
-            sync.syncAll(null);
-        } catch (Exception ignored) {
-            // In a real app, log the exception
+            sync.refresh(null).whenComplete((upserts, failure) -> finished(failure));
+        } catch (RuntimeException e) {
+            finished(e);
         }
     }
+
+    private synchronized void finished(Throwable failure) {
+        if (failure == null) {
+            failures = 0;
+            nextRunAt = System.currentTimeMillis() + jittered(intervalMillis);
+            return;
+        }
+        failures++;
+        long delay = Math.min(retryBackoffMillis << Math.min(failures - 1, 20), intervalMillis);
+        nextRunAt = System.currentTimeMillis() + jittered(delay);
+        log.warn("Scheduled catalog sync failed ({} in a row), next attempt in {}s",
+                failures, (nextRunAt - System.currentTimeMillis()) / 1000);
+    }
+
+    private long jittered(long millis) {
+        if (jitter <= 0) return millis;
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return (long) (millis * factor);
+    }
 }
@@ -2,11 +2,23 @@ package com.example.demo.product;
 
 import com.example.demo.category.Category;
 import com.example.demo.category.CategoryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.Instant;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class ProductSyncService {
@@ -14,26 +26,66 @@ public class ProductSyncService {
     private final ExternalProductClient external;
     private final ProductRepository products;
     private final CategoryRepository categories;
+    private final ApplicationEventPublisher events;
+    private final ProductSearchIndex searchIndex;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final MeterRegistry registry;
+    private final int batchSize;
 
-    public ProductSyncService(ExternalProductClient external, ProductRepository products, CategoryRepository categories) {
+    public ProductSyncService(ExternalProductClient external, ProductRepository products, CategoryRepository categories,
+                              ApplicationEventPublisher events, ProductSearchIndex searchIndex,
+                              JdbcTemplate jdbc, PlatformTransactionManager txManager, MeterRegistry registry,
+                              @Value("${catalog.sync.batch-size:500}") int batchSize) {
         this.external = external;
         this.products = products;
         this.categories = categories;
+        this.events = events;
+        this.searchIndex = searchIndex;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.registry = registry;
+        this.batchSize = batchSize;
     }
 
+    /** What upsertOne did with an upstream item. */
+    public enum Upsert { INSERTED, UPDATED, UNCHANGED }
+
     @Transactional
-    public int syncAll(String categoryFilter) {
-        List<FakeStoreProduct> source = external.list(categoryFilter);
-        int upserts = 0;
-        for (FakeStoreProduct s : source) {
-            upserts += upsertOne(s) ? 1 : 0;
+    public SyncResult syncAll(String categoryFilter) {
+        long start = System.nanoTime();
+        ExternalProductClient.Feed feed = external.fetch(categoryFilter);
+        long fetchMillis = millisSince(start);
+        recordPhase("per-item", "fetch", System.nanoTime() - start);
+        if (feed.notModified()) return new SyncResult(0, 0, 0, 0, 0, fetchMillis, 0, 0, 0);
+        long upsertStart = System.nanoTime();
+        int[] counts = new int[Upsert.values().length];
+        for (FakeStoreProduct s : feed.products()) {
+            counts[upsertOne(s).ordinal()]++;
         }
-        return upserts;
+        int removed = categoryFilter == null ? removeMissing(externalIds(feed.products())) : 0;
+        recordPhase("per-item", "upsert", System.nanoTime() - upsertStart);
+        recordCommitPhase("per-item");
+        external.commitValidatorsAfterCommit(feed);
+        SyncResult result = new SyncResult(feed.products().size(), counts[Upsert.INSERTED.ordinal()],
+                counts[Upsert.UPDATED.ordinal()], counts[Upsert.UNCHANGED.ordinal()], removed,
+                fetchMillis, 0, millisSince(upsertStart), 0);
+        registry.counter("catalog.sync.upserts", "mode", "per-item").increment(result.upserts());
+        // Nothing to invalidate when the feed matched what we have
+        if (result.changed() > 0) events.publishEvent(new CatalogSyncedEvent(categoryFilter, result.upserts()));
+        return result;
     }
 
+    // Writes only when the item's content hash differs from the stored one, or it had been removed or imported
     @Transactional
-    public boolean upsertOne(FakeStoreProduct s) {
-        Product p = products.findByExternalId(s.id()).orElseGet(() -> {
+    public Upsert upsertOne(FakeStoreProduct s) {
+        String hash = s.contentHash();
+        Optional<Product> existing = products.findByExternalId(s.id());
+        if (existing.isPresent() && hash.equals(existing.get().getContentHash()) && !existing.get().isRemoved()
+                && existing.get().getSource() == Product.Source.UPSTREAM) {
+            return Upsert.UNCHANGED;
+        }
+        Product p = existing.orElseGet(() -> {
             Product np = new Product();
             np.setExternalId(s.id());
             np.setCreatedAt(Instant.now());
@@ -45,6 +97,9 @@ public class ProductSyncService {
         p.setPrice(s.price());
         p.setStock(p.getStock() == null ? 100 : p.getStock());
         p.setImageUrl(s.image());
+        p.setContentHash(hash);
+        p.setRemovedAt(null);
+        p.setSource(Product.Source.UPSTREAM);
         p.setLastUpdated(Instant.now());
 
         Category cat = categories.findByNameIgnoreCase(s.category())
@@ -55,7 +110,203 @@ public class ProductSyncService {
                 });
         p.setCategory(cat);
 
-        products.save(p);
-        return true;
+        p = products.save(p);
+        searchIndex.indexAfterCommit(p.getId(), p.getName(), p.getDescription());
+        return existing.isPresent() ? Upsert.UPDATED : Upsert.INSERTED;
+    }
+
+    // Bulk mode: fetch outside any transaction, then write the whole feed with JDBC batches
+    public SyncResult syncAllBulk(String categoryFilter) {
+        long start = System.nanoTime();
+        ExternalProductClient.Feed feed = external.fetch(categoryFilter);
+        long fetchMillis = millisSince(start);
+        recordPhase("batch", "fetch", System.nanoTime() - start);
+        List<FakeStoreProduct> source = feed.products();
+        if (feed.notModified()) {
+            return new SyncResult(source.size(), 0, 0, 0, 0, fetchMillis, 0, 0, 0);
+        }
+
+        // Only a full feed says anything about products that are gone
+        SyncResult written = upsertBatch(categoryFilter, source, Product.Source.UPSTREAM, true, categoryFilter == null);
+        external.commitValidatorsAfterCommit(feed);
+        return new SyncResult(source.size(), written.inserted(), written.updated(), written.unchanged(), written.removed(),
+                fetchMillis, written.preloadMillis(), written.writeMillis(), written.commitMillis());
+    }
+
+    /**
+     * Upserts a batch of upstream items in one transaction: keys and content hashes of the batch's
+     * existing products and all categories are preloaded up front, items whose hash matches are
+     * skipped, and the rest go out as JDBC batches.
+     * Stock is left untouched for existing rows and defaults to 100 for new ones, as in upsertOne.
+     */
+    public SyncResult upsertBatch(String categoryFilter, List<FakeStoreProduct> source) {
+        return upsertBatch(categoryFilter, source, Product.Source.UPSTREAM, true);
+    }
+
+    // origin is recorded on every written row; publish=false leaves the CatalogSyncedEvent to the caller,
+    // e.g. once per multi-batch job
+    public SyncResult upsertBatch(String categoryFilter, List<FakeStoreProduct> source, Product.Source origin, boolean publish) {
+        return upsertBatch(categoryFilter, source, origin, publish, false);
+    }
+
+    // complete=true means source is the whole upstream catalog, so live products missing from it are removed
+    private SyncResult upsertBatch(String categoryFilter, List<FakeStoreProduct> source, Product.Source origin,
+                                   boolean publish, boolean complete) {
+        // Last occurrence wins if the feed repeats an id
+        Map<Long, FakeStoreProduct> byExternalId = new LinkedHashMap<>();
+        for (FakeStoreProduct s : source) byExternalId.put(s.id(), s);
+
+        long[] phases = new long[2]; // preload and write, in nanos
+        long start = System.nanoTime();
+        int[] counts = tx.execute(status -> {
+            long preloadStart = System.nanoTime();
+            Map<Long, ProductKey> keys = new HashMap<>();
+            loadKeys(byExternalId.keySet(), keys);
+            Map<String, Long> categoryIds = new HashMap<>();
+            for (Category c : categories.findAll()) categoryIds.put(c.getName().toLowerCase(Locale.ROOT), c.getId());
+            phases[0] = System.nanoTime() - preloadStart;
+
+            long writeStart = System.nanoTime();
+            List<Object[]> inserts = new ArrayList<>();
+            List<Object[]> updates = new ArrayList<>();
+            List<FakeStoreProduct> changed = new ArrayList<>();
+            Timestamp now = Timestamp.from(Instant.now());
+            for (FakeStoreProduct s : byExternalId.values()) {
+                String hash = s.contentHash();
+                ProductKey key = keys.get(s.id());
+                // Same content from another source is still written, so the row records who wrote it last
+                if (key != null && hash.equals(key.contentHash()) && key.removedAt() == null && key.source() == origin) continue;
+                Long categoryId = categoryId(categoryIds, s.category());
+                if (key == null) {
+                    inserts.add(new Object[]{s.id(), s.title(), s.description(), s.price(), 100, s.image(), categoryId, hash,
+                            origin.name(), now, now});
+                } else {
+                    updates.add(new Object[]{s.title(), s.description(), s.price(), s.image(), categoryId, hash, origin.name(),
+                            now, key.id()});
+                }
+                changed.add(s);
+            }
+            batch("INSERT INTO products (external_id, name, description, price, stock, image_url, category_id, content_hash, source, "
+                    + "created_at, last_updated) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", inserts, INSERT_TYPES);
+            batch("UPDATE products SET name = ?, description = ?, price = ?, image_url = ?, category_id = ?, content_hash = ?, "
+                    + "source = ?, removed_at = NULL, last_updated = ? WHERE id = ?", updates, UPDATE_TYPES);
+
+            // IDENTITY keys are not returned from batches, so resolve new ids with one more key lookup
+            if (!inserts.isEmpty()) {
+                List<Long> inserted = new ArrayList<>(inserts.size());
+                for (Object[] row : inserts) inserted.add((Long) row[0]);
+                loadKeys(inserted, keys);
+            }
+            for (FakeStoreProduct s : changed) {
+                searchIndex.indexAfterCommit(keys.get(s.id()).id(), s.title(), s.description());
+            }
+            int removed = complete ? removeMissing(byExternalId.keySet()) : 0;
+            phases[1] = System.nanoTime() - writeStart;
+
+            if (publish && changed.size() + removed > 0) {
+                events.publishEvent(new CatalogSyncedEvent(categoryFilter, changed.size()));
+            }
+            return new int[]{inserts.size(), updates.size(), byExternalId.size() - changed.size(), removed};
+        });
+        long commitNanos = System.nanoTime() - start - phases[0] - phases[1];
+        recordPhase("batch", "preload", phases[0]);
+        recordPhase("batch", "write", phases[1]);
+        recordPhase("batch", "commit", commitNanos);
+        registry.counter("catalog.sync.upserts", "mode", "batch").increment(counts[0] + counts[1]);
+        return new SyncResult(source.size(), counts[0], counts[1], counts[2], counts[3], 0,
+                phases[0] / 1_000_000, phases[1] / 1_000_000, commitNanos / 1_000_000);
+    }
+
+    /**
+     * Tombstones live upstream products whose external id is not in externalIds, the ids of a
+     * complete feed: they are hidden from the catalog but kept for carts and orders that refer to
+     * them, and come back if a later feed lists them again. Products last written by a file import
+     * are not the feed's to remove and are left alone. An empty feed is taken as an upstream
+     * problem rather than an empty catalog, and removes nothing.
+     */
+    @Transactional
+    public int removeMissing(Set<Long> externalIds) {
+        if (externalIds.isEmpty()) return 0;
+        List<Long> gone = new ArrayList<>();
+        for (ProductKey k : products.findLiveKeys()) {
+            if (!externalIds.contains(k.externalId())) gone.add(k.id());
+        }
+        Instant now = Instant.now();
+        for (int from = 0; from < gone.size(); from += KEY_LOOKUP_SIZE) {
+            products.markRemoved(gone.subList(from, Math.min(from + KEY_LOOKUP_SIZE, gone.size())), now);
+        }
+        for (Long id : gone) searchIndex.removeAfterCommit(id);
+        if (!gone.isEmpty()) registry.counter("catalog.sync.removed").increment(gone.size());
+        return gone.size();
+    }
+
+    static Set<Long> externalIds(List<FakeStoreProduct> feed) {
+        Set<Long> ids = new HashSet<>(feed.size() * 2);
+        for (FakeStoreProduct s : feed) ids.add(s.id());
+        return ids;
+    }
+
+    // Keeps IN lists well under driver bind-parameter limits
+    private static final int KEY_LOOKUP_SIZE = 1000;
+
+    private static final int[] INSERT_TYPES = {Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.NUMERIC,
+            Types.INTEGER, Types.VARCHAR, Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP, Types.TIMESTAMP};
+    private static final int[] UPDATE_TYPES = {Types.VARCHAR, Types.VARCHAR, Types.NUMERIC, Types.VARCHAR,
+            Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP, Types.BIGINT};
+
+    private void loadKeys(Collection<Long> externalIds, Map<Long, ProductKey> into) {
+        List<Long> ids = new ArrayList<>(externalIds);
+        for (int from = 0; from < ids.size(); from += KEY_LOOKUP_SIZE) {
+            for (ProductKey k : products.findKeysByExternalIdIn(ids.subList(from, Math.min(from + KEY_LOOKUP_SIZE, ids.size())))) {
+                into.put(k.externalId(), k);
+            }
+        }
+    }
+
+    private void batch(String sql, List<Object[]> rows, int[] types) {
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            jdbc.batchUpdate(sql, rows.subList(from, Math.min(from + batchSize, rows.size())), types);
+        }
+    }
+
+    // Categories are few, so new ones are created one by one and remembered for the rest of the batch
+    private Long categoryId(Map<String, Long> categoryIds, String name) {
+        if (name == null) return null;
+        return categoryIds.computeIfAbsent(name.toLowerCase(Locale.ROOT), k -> {
+            Category c = new Category();
+            c.setName(name);
+            return categories.save(c).getId();
+        });
+    }
+
+    private void recordPhase(String mode, String phase, long nanos) {
+        Timer.builder("catalog.sync.phase")
+                .description("Time spent in each phase of a catalog sync")
+                .tag("mode", mode)
+                .tag("phase", phase)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // The surrounding @Transactional commits after we return, so time it from the transaction's own callbacks
+    private void recordCommitPhase(String mode) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private long start;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                start = System.nanoTime();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED && start != 0) recordPhase(mode, "commit", System.nanoTime() - start);
+            }
+        });
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
     }
 }
@@ -0,0 +1,303 @@
+package com.example.demo.product;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * "Frequently bought together": for every product, how many carts currently hold it together with
+ * each other product. Cart stores (and the cart reaper, for the carts it deletes) report each
+ * cart's products before and after a change, and only the pairs that appeared or disappeared are
+ * counted up or down, so the index follows cart contents without ever joining cart_items with
+ * itself. Neighbour counts live in a LongCountMap per product (guarded by that map), are pruned to
+ * the catalog.related.max-neighbours strongest periodically, and are written to
+ * catalog.related.snapshot-file so a restart picks up where the last run stopped. Only the snapshot
+ * written at shutdown is marked complete: after a crash, changes since the last periodic snapshot
+ * are unknown, so the index is rebuilt from a single ordered scan of cart_items instead, as it is
+ * without a snapshot. Pruning trims weak pairs, so counts beyond the strongest neighbours are
+ * approximate.
+ */
+@Component
+public class RelatedProducts {
+
+    private static final Logger log = LoggerFactory.getLogger(RelatedProducts.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x52454c32; // "REL2"
+    // Larger carts add little signal and would cost size^2 pair updates
+    private static final int MAX_CART_PRODUCTS = 100;
+
+    private final ProductRepository repo;
+    private final JdbcTemplate jdbc;
+    private final boolean enabled;
+    private final int maxNeighbours;
+    private final Path snapshotFile;
+    private final Cache<Long, List<ProductDto>> served;
+
+    private final ConcurrentHashMap<Long, LongCountMap> neighbours = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    public RelatedProducts(ProductRepository repo, JdbcTemplate jdbc,
+                           @Value("${catalog.related.enabled:true}") boolean enabled,
+                           @Value("${catalog.related.max-neighbours:50}") int maxNeighbours,
+                           @Value("${catalog.related.snapshot-file:data/related-products.bin}") String snapshotFile,
+                           @Value("${catalog.related.cache-ttl:30s}") Duration cacheTtl) {
+        this.repo = repo;
+        this.jdbc = jdbc;
+        this.enabled = enabled;
+        this.maxNeighbours = maxNeighbours;
+        this.snapshotFile = Path.of(snapshotFile).toAbsolutePath().normalize();
+        this.served = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
+    /**
+     * Counts the pairs a cart gained and lost going from the products in before to those in after.
+     * Inside a transaction this happens once it commits, so rolled back changes never count.
+     */
+    public void cartChangedAfterCommit(Set<Long> before, Set<Long> after) {
+        if (!enabled || before.equals(after)) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cartChanged(before, after);
+                }
+            });
+        } else {
+            cartChanged(before, after);
+        }
+    }
+
+    void cartChanged(Set<Long> before, Set<Long> after) {
+        if (before.size() > MAX_CART_PRODUCTS || after.size() > MAX_CART_PRODUCTS) return;
+        List<Long> added = new ArrayList<>();
+        List<Long> removed = new ArrayList<>();
+        List<Long> kept = new ArrayList<>();
+        for (Long id : after) (before.contains(id) ? kept : added).add(id);
+        for (Long id : before) if (!after.contains(id)) removed.add(id);
+
+        // New pairs: each added product with everything kept and with the other added ones
+        for (int i = 0; i < added.size(); i++) {
+            for (Long other : kept) pair(added.get(i), other, 1);
+            for (int j = i + 1; j < added.size(); j++) pair(added.get(i), added.get(j), 1);
+        }
+        // Lost pairs: each removed product with everything kept and with the other removed ones
+        for (int i = 0; i < removed.size(); i++) {
+            for (Long other : kept) pair(removed.get(i), other, -1);
+            for (int j = i + 1; j < removed.size(); j++) pair(removed.get(i), removed.get(j), -1);
+        }
+    }
+
+    private void pair(long a, long b, int delta) {
+        dirty = true;
+        count(a, b, delta);
+        count(b, a, delta);
+    }
+
+    private void count(long product, long other, int delta) {
+        for (;;) {
+            LongCountMap map = delta > 0
+                    ? neighbours.computeIfAbsent(product, id -> new LongCountMap())
+                    : neighbours.get(product);
+            if (map == null) return;
+            synchronized (map) {
+                // Pruned as empty between lookup and lock; count into the map that replaces it
+                if (neighbours.get(product) != map) continue;
+                map.add(other, delta);
+                return;
+            }
+        }
+    }
+
+    /** Up to limit products most often in the same carts as the given one, strongest first. */
+    public List<ProductDto> related(Long productId, int limit) {
+        if (!enabled || limit <= 0) return List.of();
+        List<ProductDto> ranked = served.get(productId, this::lookup);
+        return ranked.subList(0, Math.min(limit, ranked.size()));
+    }
+
+    private List<ProductDto> lookup(Long productId) {
+        LongCountMap map = neighbours.get(productId);
+        if (map == null) return List.of();
+        List<long[]> entries = new ArrayList<>();
+        synchronized (map) {
+            map.forEach((other, count) -> entries.add(new long[]{other, count}));
+        }
+        // Strongest first, lower id first on ties so the order is stable
+        entries.sort((x, y) -> x[1] != y[1] ? Long.compare(y[1], x[1]) : Long.compare(x[0], y[0]));
+        List<Long> ids = new ArrayList<>(Math.min(entries.size(), maxNeighbours));
+        for (long[] e : entries.subList(0, Math.min(entries.size(), maxNeighbours))) ids.add(e[0]);
+        if (ids.isEmpty()) return List.of();
+
+        Map<Long, ProductDto> dtos = new HashMap<>();
+        for (ProductDto dto : repo.findDtosByIdIn(ids)) dtos.put(dto.id(), dto);
+        List<ProductDto> out = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductDto dto = dtos.get(id);
+            if (dto != null) out.add(dto);
+        }
+        return List.copyOf(out);
+    }
+
+    // Prices and names shown next to a product should match its page
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogSynced(CatalogSyncedEvent event) {
+        served.invalidateAll();
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.related.prune-interval-ms:600000}")
+    public void prune() {
+        int trimmed = 0;
+        for (Map.Entry<Long, LongCountMap> e : neighbours.entrySet()) {
+            LongCountMap map = e.getValue();
+            synchronized (map) {
+                if (map.size() > maxNeighbours) {
+                    map.retainTop(maxNeighbours);
+                    trimmed++;
+                }
+                // Only dropped when empty; the next increment recreates it
+                if (map.size() == 0) neighbours.remove(e.getKey(), map);
+            }
+        }
+        if (trimmed > 0) log.debug("Pruned neighbours of {} products to {}", trimmed, maxNeighbours);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!enabled) return;
+        if (Files.isRegularFile(snapshotFile)) {
+            try {
+                int products = load();
+                if (products >= 0) {
+                    log.info("Loaded related-product counts for {} products from {}", products, snapshotFile);
+                    // From now on changes may be missing from the file until the next clean stop
+                    write(false);
+                    return;
+                }
+                log.info("Related-product snapshot {} predates an unclean stop, rebuilding from carts", snapshotFile);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Ignoring unreadable related-product snapshot {}", snapshotFile, e);
+            }
+            neighbours.clear();
+        }
+        rebuildFromCarts();
+    }
+
+    // One pass over cart_items in cart order, counting each cart's pairs as it completes
+    private void rebuildFromCarts() {
+        long[] carts = {0};
+        List<Long> current = new ArrayList<>();
+        long[] currentCart = {-1};
+        jdbc.query("SELECT cart_id, product_id FROM cart_items ORDER BY cart_id", rs -> {
+            long cartId = rs.getLong(1);
+            if (cartId != currentCart[0]) {
+                if (!current.isEmpty()) carts[0]++;
+                cartChanged(Set.of(), new HashSet<>(current));
+                current.clear();
+                currentCart[0] = cartId;
+            }
+            current.add(rs.getLong(2));
+        });
+        if (!current.isEmpty()) carts[0]++;
+        cartChanged(Set.of(), new HashSet<>(current));
+        prune();
+        if (carts[0] > 0) log.info("Built related-product counts from {} carts", carts[0]);
+    }
+
+    @Scheduled(initialDelayString = "${catalog.related.snapshot-interval-ms:300000}",
+               fixedDelayString = "${catalog.related.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (!enabled || !dirty) return;
+        dirty = false;
+        try {
+            write(false);
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("Could not write related-product snapshot {}", snapshotFile, e);
+        }
+    }
+
+    // Written even when nothing changed, to mark the snapshot complete
+    @PreDestroy
+    public void snapshotOnShutdown() {
+        if (!enabled) return;
+        try {
+            write(true);
+        } catch (IOException e) {
+            log.warn("Could not write related-product snapshot {}", snapshotFile, e);
+        }
+    }
+
+    // Format: magic, complete flag, product count, then per product its id, neighbour count and
+    // (neighbour, count) pairs. complete is only set at shutdown, when no later change can be missing
+    private synchronized void write(boolean complete) throws IOException {
+        Files.createDirectories(snapshotFile.getParent());
+        Path tmp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            List<Map.Entry<Long, LongCountMap>> entries = new ArrayList<>(neighbours.entrySet());
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeBoolean(complete);
+            out.writeInt(entries.size());
+            for (Map.Entry<Long, LongCountMap> e : entries) {
+                LongCountMap map = e.getValue();
+                long[] keys;
+                int[] counts;
+                synchronized (map) {
+                    keys = new long[map.size()];
+                    counts = new int[map.size()];
+                    int[] i = {0};
+                    map.forEach((other, count) -> {
+                        keys[i[0]] = other;
+                        counts[i[0]++] = count;
+                    });
+                }
+                out.writeLong(e.getKey());
+                out.writeInt(keys.length);
+                for (int i = 0; i < keys.length; i++) {
+                    out.writeLong(keys[i]);
+                    out.writeInt(counts[i]);
+                }
+            }
+        }
+        // Readers only ever see a complete file
+        Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Returns the number of products loaded, or -1 if the snapshot is not complete and was not loaded
+    private int load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) throw new IOException("Not a related-product snapshot");
+            if (!in.readBoolean()) return -1;
+            int products = in.readInt();
+            for (int p = 0; p < products; p++) {
+                long productId = in.readLong();
+                int n = in.readInt();
+                LongCountMap map = new LongCountMap(n);
+                for (int i = 0; i < n; i++) map.add(in.readLong(), in.readInt());
+                if (map.size() > 0) neighbours.put(productId, map);
+            }
+            return products;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.demo.product;
+
+import jakarta.persistence.*;
+
+// Units of products.reserved written by one instance, so its restart only takes back its own holds
+@Entity
+@Table(name = "reservation_shares",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"instance_id", "product_id"}))
+public class ReservationShare {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "instance_id", nullable = false, length = 64)
+    private String instanceId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private int units;
+
+    // getters
+    public Long getId() { return id; }
+    public String getInstanceId() { return instanceId; }
+    public Long getProductId() { return productId; }
+    public int getUnits() { return units; }
+}
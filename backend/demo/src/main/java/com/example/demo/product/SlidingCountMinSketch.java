@@ -0,0 +1,82 @@
+package com.example.demo.product;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate per-key counts over a sliding time window, in fixed memory: a ring of count-min
+ * sketches, one per slice of the window. Adding only CASes counters of the current slice; a slice
+ * is wiped by whichever thread first writes to it after it went out of the window. Estimates never
+ * undercount (except for adds dropped in the instant a slice is being wiped) and overcount by at
+ * most about 2/width of the window's total, with probability 1 - 2^-depth.
+ */
+final class SlidingCountMinSketch {
+
+    // Epoch of a slice that some thread is wiping
+    private static final long CLEARING = -1;
+
+    private final long sliceMillis;
+    private final int slices;
+    private final int depth;
+    private final int mask;
+    private final AtomicIntegerArray[] counts;
+    private final AtomicLongArray epochs;
+
+    /** width is rounded up to a power of two. */
+    SlidingCountMinSketch(long windowMillis, int slices, int depth, int width) {
+        this.sliceMillis = Math.max(1, windowMillis / slices);
+        this.slices = slices;
+        this.depth = depth;
+        int w = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.mask = w - 1;
+        this.counts = new AtomicIntegerArray[slices];
+        for (int i = 0; i < slices; i++) counts[i] = new AtomicIntegerArray(depth * w);
+        this.epochs = new AtomicLongArray(slices);
+        for (int i = 0; i < slices; i++) epochs.set(i, Long.MIN_VALUE);
+    }
+
+    void add(long key, int units, long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        int slice = (int) Math.floorMod(epoch, (long) slices);
+        long seen = epochs.get(slice);
+        if (seen != epoch) {
+            // Older than the window (or mid-wipe, or we are the stale one): only an older epoch gets wiped
+            if (seen == CLEARING || seen > epoch || !epochs.compareAndSet(slice, seen, CLEARING)) return;
+            AtomicIntegerArray c = counts[slice];
+            for (int i = 0; i < c.length(); i++) c.set(i, 0);
+            epochs.set(slice, epoch);
+        }
+        AtomicIntegerArray c = counts[slice];
+        long h1 = mix(key);
+        long h2 = mix(h1 ^ key) | 1;
+        for (int row = 0; row < depth; row++) {
+            c.getAndAdd(row * (mask + 1) + (int) ((h1 + row * h2) & mask), units);
+        }
+    }
+
+    /** Sum over the slices still in the window of each slice's smallest counter for the key. */
+    long estimate(long key, long nowMillis) {
+        long epoch = nowMillis / sliceMillis;
+        long h1 = mix(key);
+        long h2 = mix(h1 ^ key) | 1;
+        long total = 0;
+        for (int slice = 0; slice < slices; slice++) {
+            long e = epochs.get(slice);
+            if (e == CLEARING || e <= epoch - slices || e > epoch) continue;
+            AtomicIntegerArray c = counts[slice];
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                min = Math.min(min, c.get(row * (mask + 1) + (int) ((h1 + row * h2) & mask)));
+            }
+            total += min;
+        }
+        return total;
+    }
+
+    // Stafford variant 13 of the 64-bit finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
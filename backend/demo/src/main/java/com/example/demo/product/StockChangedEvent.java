@@ -0,0 +1,6 @@
+package com.example.demo.product;
+
+import java.util.Set;
+
+// Published by InventoryReservations after writing new reservation counts for these products
+public record StockChangedEvent(Set<Long> productIds) {}
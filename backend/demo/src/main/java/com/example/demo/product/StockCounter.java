@@ -0,0 +1,112 @@
+package com.example.demo.product;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Units of one product that can still be reserved, spread over shards so concurrent reservations
+ * CAS different slots instead of all contending on one. A reservation first tries to take the
+ * whole amount from the shard its hint maps to, then from any other shard, and only when no single
+ * shard has enough gathers units across shards (handing them back if the total falls short).
+ * The available count is never driven below zero, so a product cannot be oversold.
+ */
+final class StockCounter {
+
+    // Slots sit 64 bytes apart so shards updated by different cores do not share a cache line
+    private static final int SPACING = 16;
+
+    final Long productId;
+    private final int shards;
+    private final AtomicIntegerArray slots;
+    // Net units reserved (+) or released (-) since the last reconciliation
+    private final AtomicInteger pending = new AtomicInteger();
+
+    // products.stock, products.reserved and stock_version as last read or written; only touched by the reconciler
+    int stock;
+    int reserved;
+    long version;
+
+    StockCounter(Long productId, int shards, int stock, int reserved, long version) {
+        this.productId = productId;
+        this.shards = shards;
+        this.slots = new AtomicIntegerArray(shards * SPACING);
+        this.stock = stock;
+        this.reserved = reserved;
+        this.version = version;
+        int available = Math.max(0, stock - reserved);
+        for (int i = 0; i < shards; i++) {
+            slots.set(i * SPACING, available / shards + (i < available % shards ? 1 : 0));
+        }
+    }
+
+    /** Takes units if that many are available; false leaves the counter as it was. */
+    boolean reserve(int units, int hint) {
+        if (units <= 0) return true;
+        if (!take(units, hint)) return false;
+        pending.addAndGet(units);
+        return true;
+    }
+
+    void release(int units, int hint) {
+        if (units <= 0) return;
+        slots.getAndAdd(slot(hint), units);
+        pending.addAndGet(-units);
+    }
+
+    int available() {
+        int sum = 0;
+        for (int i = 0; i < shards; i++) sum += slots.get(i * SPACING);
+        return sum;
+    }
+
+    int drainPending() {
+        return pending.getAndSet(0);
+    }
+
+    // A reconciliation that did not go through hands its delta back for the next attempt
+    void restorePending(int delta) {
+        pending.addAndGet(delta);
+    }
+
+    /**
+     * Shifts availability after stock or reservations changed behind our back. Units that are
+     * no longer there are taken where they can be; the rest is already held and returns short.
+     */
+    void adjust(int units) {
+        if (units > 0) slots.getAndAdd(slot(0), units);
+        else if (units < 0) gather(-units, 0);
+    }
+
+    private boolean take(int units, int hint) {
+        for (int i = 0; i < shards; i++) {
+            int slot = slot(hint + i);
+            for (int v; (v = slots.get(slot)) >= units; ) {
+                if (slots.compareAndSet(slot, v, v - units)) return true;
+            }
+        }
+        int taken = gather(units, hint);
+        if (taken == units) return true;
+        if (taken > 0) slots.getAndAdd(slot(hint), taken);
+        return false;
+    }
+
+    // Takes up to units from whichever shards have any and returns how many it got
+    private int gather(int units, int hint) {
+        int taken = 0;
+        for (int i = 0; i < shards && taken < units; i++) {
+            int slot = slot(hint + i);
+            for (int v; (v = slots.get(slot)) > 0; ) {
+                int t = Math.min(v, units - taken);
+                if (slots.compareAndSet(slot, v, v - t)) {
+                    taken += t;
+                    break;
+                }
+            }
+        }
+        return taken;
+    }
+
+    private int slot(int hint) {
+        return Math.floorMod(hint, shards) * SPACING;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.product;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+// Progress of one partition of a partitioned sync job, committed together with the data it covers
+@Entity
+@Table(name = "sync_checkpoints",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"job_id", "partition_key"}))
+public class SyncCheckpoint {
+
+    public enum State { PENDING, RUNNING, DONE, FAILED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private String jobId;
+
+    // Fingerprint of the feed the job is applying; a restart only resumes the same feed
+    @Column(name = "feed_hash", nullable = false)
+    private String feedHash;
+
+    @Column(name = "partition_key", nullable = false)
+    private String partitionKey;
+
+    @Column(nullable = false)
+    private int total;
+
+    // Items of the partition (in external id order) already written
+    @Column(nullable = false)
+    private int committed;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private State state = State.PENDING;
+
+    @Column(length = 1000)
+    private String error;
+
+    @Column(nullable = false)
+    private Instant updatedAt = Instant.now();
+
+    public SyncCheckpoint() {}
+
+    public SyncCheckpoint(String jobId, String feedHash, String partitionKey, int total) {
+        this.jobId = jobId;
+        this.feedHash = feedHash;
+        this.partitionKey = partitionKey;
+        this.total = total;
+    }
+
+    // getters/setters
+    public Long getId() { return id; }
+    public String getJobId() { return jobId; }
+    public String getFeedHash() { return feedHash; }
+    public String getPartitionKey() { return partitionKey; }
+    public int getTotal() { return total; }
+    public int getCommitted() { return committed; }
+    public void setCommitted(int committed) { this.committed = committed; }
+    public State getState() { return state; }
+    public void setState(State state) { this.state = state; }
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
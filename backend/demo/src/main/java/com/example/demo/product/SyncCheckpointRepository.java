@@ -0,0 +1,22 @@
+package com.example.demo.product;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface SyncCheckpointRepository extends JpaRepository<SyncCheckpoint, Long> {
+
+    List<SyncCheckpoint> findByFeedHash(String feedHash);
+
+    boolean existsByStateNot(SyncCheckpoint.State state);
+
+    @Modifying
+    @Query("UPDATE SyncCheckpoint c SET c.committed = :committed, c.state = :state, c.error = :error, c.updatedAt = :now WHERE c.id = :id")
+    int updateProgress(@Param("id") Long id, @Param("committed") int committed,
+                       @Param("state") SyncCheckpoint.State state, @Param("error") String error,
+                       @Param("now") Instant now);
+}
@@ -0,0 +1,135 @@
+package com.example.demo.product;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs catalog syncs off the request path, one in-flight job per category.
+ * Concurrent requests for the same category join the running job instead of starting another,
+ * and a category request joins a running full sync since that covers it. Callers decide
+ * whether to wait on the returned future or carry on with the data they already have.
+ */
+@Component
+public class SyncCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncCoordinator.class);
+    private static final String ALL = "";
+
+    private final ProductSyncService sync;
+    private final SyncJobEngine engine;
+    private final CatalogGeneration generation;
+    private final String mode;
+    private final long minIntervalMillis;
+    private final ExecutorService executor;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Integer>> inFlight = new ConcurrentHashMap<>();
+    // Last finished attempt per category key, successful or not, for throttling automatic refreshes
+    private final ConcurrentHashMap<String, Long> lastAttempt = new ConcurrentHashMap<>();
+
+    private volatile Instant lastSyncedAt;
+    private volatile String lastError;
+
+    public SyncCoordinator(ProductSyncService sync, SyncJobEngine engine, CatalogGeneration generation,
+                           @Value("${catalog.sync.mode:per-item}") String mode,
+                           @Value("${catalog.sync.min-interval:30s}") Duration minInterval,
+                           @Value("${catalog.sync.threads:2}") int threads) {
+        this.sync = sync;
+        this.engine = engine;
+        this.generation = generation;
+        this.mode = mode.toLowerCase(Locale.ROOT);
+        this.minIntervalMillis = minInterval.toMillis();
+        AtomicInteger n = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "catalog-sync-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Starts a sync of the category (null for everything), or returns the one already running. */
+    public CompletableFuture<Integer> refresh(String category) {
+        String key = key(category);
+        if (!key.equals(ALL)) {
+            CompletableFuture<Integer> full = inFlight.get(ALL);
+            if (full != null) return full;
+        }
+        CompletableFuture<Integer> created = new CompletableFuture<>();
+        CompletableFuture<Integer> running = inFlight.putIfAbsent(key, created);
+        if (running != null) return running;
+
+        try {
+            executor.execute(() -> run(category, key, created));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+
+    /**
+     * Background refresh for read paths that found nothing: skipped while a sync for the
+     * category is running or if the last attempt finished within the minimum interval.
+     */
+    public void refreshIfIdle(String category) {
+        String key = key(category);
+        if (inFlight.containsKey(key) || inFlight.containsKey(ALL)) return;
+        Long last = lastAttempt.get(key);
+        if (last != null && System.currentTimeMillis() - last < minIntervalMillis) return;
+        refresh(category);
+    }
+
+    public SyncStatus status() {
+        Instant synced = lastSyncedAt;
+        Long age = synced == null ? null : Duration.between(synced, Instant.now()).toSeconds();
+        Set<String> running = new TreeSet<>();
+        for (String key : inFlight.keySet()) running.add(key.equals(ALL) ? "*" : key);
+        return new SyncStatus(generation.current(), generation.changedAt(), synced, age, running, lastError);
+    }
+
+    private void run(String category, String key, CompletableFuture<Integer> job) {
+        Integer upserts = null;
+        Throwable failure = null;
+        try {
+            upserts = switch (mode) {
+                // Partitioned jobs cover the whole feed; a single category is small enough for one batch
+                case "partitioned" -> key.equals(ALL)
+                        ? engine.start().completion().join()
+                        : sync.syncAllBulk(category).upserts();
+                case "bulk" -> sync.syncAllBulk(category).upserts();
+                default -> sync.syncAll(category).upserts();
+            };
+            lastSyncedAt = Instant.now();
+            lastError = null;
+        } catch (Throwable t) {
+            if (t instanceof CompletionException && t.getCause() != null) t = t.getCause();
+            log.warn("Catalog sync failed for category {}", key.equals(ALL) ? "*" : key, t);
+            lastError = t.toString();
+            failure = t;
+        }
+        // Leave the in-flight map before completing, so anyone woken by the result starts fresh
+        lastAttempt.put(key, System.currentTimeMillis());
+        inFlight.remove(key, job);
+        if (failure != null) job.completeExceptionally(failure);
+        else job.complete(upserts);
+    }
+
+    private static String key(String category) {
+        return (category == null || category.isBlank()) ? ALL : category.toLowerCase(Locale.ROOT);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.demo.product;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Full catalog sync split into one partition per category.
+ * The feed is fetched once, partitions run concurrently on a bounded pool, and each partition is
+ * written in chunks of catalog.sync.batch-size, every chunk in its own short transaction together
+ * with its checkpoint row. If the process dies mid-job, the next run of the same feed picks up
+ * each partition after its last committed chunk instead of starting over.
+ * Only one job runs at a time; starting while one is running returns the running job.
+ */
+@Component
+public class SyncJobEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(SyncJobEngine.class);
+    private static final String NO_CATEGORY = "(none)";
+
+    private final ExternalProductClient external;
+    private final ProductSyncService sync;
+    private final SyncCheckpointRepository checkpoints;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate tx;
+    private final int chunkSize;
+    private final ExecutorService jobs;
+    private final ExecutorService partitions;
+
+    private volatile Job current;
+
+    public SyncJobEngine(ExternalProductClient external, ProductSyncService sync,
+                         SyncCheckpointRepository checkpoints, ApplicationEventPublisher events,
+                         PlatformTransactionManager txManager,
+                         @Value("${catalog.sync.batch-size:500}") int chunkSize,
+                         @Value("${catalog.sync.parallelism:4}") int parallelism) {
+        this.external = external;
+        this.sync = sync;
+        this.checkpoints = checkpoints;
+        this.events = events;
+        this.tx = new TransactionTemplate(txManager);
+        this.chunkSize = chunkSize;
+        this.jobs = Executors.newSingleThreadExecutor(daemon("catalog-sync-job"));
+        this.partitions = Executors.newFixedThreadPool(parallelism, daemon("catalog-sync-partition"));
+    }
+
+    /** Starts a full sync job, or returns the one already running. */
+    public synchronized Job start() {
+        Job job = current;
+        if (job != null && !job.completion.isDone()) return job;
+        Job created = new Job(UUID.randomUUID().toString());
+        current = created;
+        try {
+            jobs.execute(() -> run(created));
+        } catch (RejectedExecutionException e) {
+            created.finish("FAILED", 0, e);
+        }
+        return created;
+    }
+
+    public Optional<SyncJobStatus> status() {
+        Job job = current;
+        return job == null ? Optional.empty() : Optional.of(job.status());
+    }
+
+    // True when a previous job stopped before finishing all of its partitions
+    public boolean hasUnfinishedCheckpoints() {
+        return checkpoints.existsByStateNot(SyncCheckpoint.State.DONE);
+    }
+
+    private void run(Job job) {
+        try {
+            long fetchStart = System.nanoTime();
+            ExternalProductClient.Feed feed = external.fetch(null);
+            job.fetchMillis = millisSince(fetchStart);
+            // A 304 still carries the cached feed: partitions an earlier job left unfinished are retried with it
+            if (feed.notModified() && !hasUnfinishedCheckpoints()) {
+                job.finish("UNCHANGED", 0, null);
+                return;
+            }
+
+            SortedMap<String, List<FakeStoreProduct>> byPartition = partition(feed.products());
+            String feedHash = fingerprint(byPartition);
+            Map<String, SyncCheckpoint> saved = prepareCheckpoints(job, feedHash, byPartition);
+            if (saved == null) {
+                // This exact feed was already applied completely
+                external.commitValidators(feed);
+                job.finish("UNCHANGED", 0, null);
+                return;
+            }
+
+            List<CompletableFuture<Void>> running = new ArrayList<>();
+            for (Map.Entry<String, List<FakeStoreProduct>> e : byPartition.entrySet()) {
+                SyncCheckpoint checkpoint = saved.get(e.getKey());
+                Part part = new Part(e.getKey(), e.getValue().size(), checkpoint.getCommitted());
+                job.parts.add(part);
+                if (checkpoint.getState() == SyncCheckpoint.State.DONE) {
+                    part.state = "DONE";
+                    continue;
+                }
+                running.add(CompletableFuture.runAsync(() -> runPartition(part, e.getValue(), checkpoint), partitions));
+            }
+            CompletableFuture.allOf(running.toArray(CompletableFuture[]::new)).join();
+
+            int upserts = 0;
+            int failed = 0;
+            for (Part part : job.parts) {
+                upserts += part.upserts;
+                if ("FAILED".equals(part.state)) failed++;
+            }
+            // Only a fully applied feed can tell which products are gone upstream
+            if (failed == 0) {
+                Set<Long> ids = ProductSyncService.externalIds(feed.products());
+                job.removed = sync.removeMissing(ids);
+            }
+            // One event for the whole job, so derived views rebuild once; none if nothing changed
+            if (upserts + job.removed > 0) events.publishEvent(new CatalogSyncedEvent(null, upserts));
+            if (failed > 0) {
+                job.finish("FAILED", upserts, new IllegalStateException(failed + " of " + job.parts.size() + " partitions failed"));
+            } else {
+                // Only now may the next run skip an unchanged feed
+                external.commitValidators(feed);
+                job.finish("DONE", upserts, null);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Sync job {} failed", job.id, e);
+            job.finish("FAILED", 0, e);
+        }
+    }
+
+    // Returns the checkpoint per partition, resuming an unfinished job for the same feed; null if already applied
+    private Map<String, SyncCheckpoint> prepareCheckpoints(Job job, String feedHash,
+                                                           SortedMap<String, List<FakeStoreProduct>> byPartition) {
+        return tx.execute(status -> {
+            Map<String, SyncCheckpoint> byKey = new HashMap<>();
+            List<SyncCheckpoint> existing = checkpoints.findByFeedHash(feedHash);
+            if (!existing.isEmpty()) {
+                if (existing.stream().allMatch(c -> c.getState() == SyncCheckpoint.State.DONE)) return null;
+                for (SyncCheckpoint c : existing) byKey.put(c.getPartitionKey(), c);
+                job.resumedFrom = existing.get(0).getJobId();
+                log.info("Resuming sync job {} for an unchanged feed", job.resumedFrom);
+                return byKey;
+            }
+            checkpoints.deleteAllInBatch();
+            List<SyncCheckpoint> created = new ArrayList<>();
+            byPartition.forEach((key, items) -> created.add(new SyncCheckpoint(job.id, feedHash, key, items.size())));
+            for (SyncCheckpoint c : checkpoints.saveAll(created)) byKey.put(c.getPartitionKey(), c);
+            return byKey;
+        });
+    }
+
+    private void runPartition(Part part, List<FakeStoreProduct> items, SyncCheckpoint checkpoint) {
+        long start = System.nanoTime();
+        part.state = "RUNNING";
+        try {
+            for (int from = part.committed; from < items.size(); from += chunkSize) {
+                List<FakeStoreProduct> chunk = items.subList(from, Math.min(from + chunkSize, items.size()));
+                int end = from + chunk.size();
+                SyncCheckpoint.State state = end == items.size() ? SyncCheckpoint.State.DONE : SyncCheckpoint.State.RUNNING;
+                SyncResult written = tx.execute(status -> {
+                    SyncResult r = sync.upsertBatch(part.key, chunk, Product.Source.UPSTREAM, false);
+                    checkpoints.updateProgress(checkpoint.getId(), end, state, null, Instant.now());
+                    return r;
+                });
+                part.committed = end;
+                part.upserts += written.upserts();
+                part.unchanged += written.unchanged();
+            }
+            part.state = "DONE";
+        } catch (RuntimeException e) {
+            log.warn("Sync partition {} failed after {} of {} items", part.key, part.committed, part.total, e);
+            part.state = "FAILED";
+            part.error = e.toString();
+            String error = truncate(e.toString());
+            try {
+                tx.executeWithoutResult(status -> checkpoints.updateProgress(
+                        checkpoint.getId(), part.committed, SyncCheckpoint.State.FAILED, error, Instant.now()));
+            } catch (RuntimeException ignored) {
+                // The checkpoint still holds the last committed offset
+            }
+        } finally {
+            part.durationMillis = millisSince(start);
+        }
+    }
+
+    // One partition per category (case-insensitive), items ordered by external id so offsets are stable
+    private static SortedMap<String, List<FakeStoreProduct>> partition(List<FakeStoreProduct> feed) {
+        Map<Long, FakeStoreProduct> byId = new LinkedHashMap<>();
+        for (FakeStoreProduct s : feed) byId.put(s.id(), s);
+        SortedMap<String, List<FakeStoreProduct>> out = new TreeMap<>();
+        for (FakeStoreProduct s : byId.values()) {
+            String key = s.category() == null ? NO_CATEGORY : s.category().toLowerCase(Locale.ROOT);
+            out.computeIfAbsent(key, k -> new ArrayList<>()).add(s);
+        }
+        out.values().forEach(items -> items.sort(Comparator.comparing(FakeStoreProduct::id)));
+        return out;
+    }
+
+    private static String fingerprint(SortedMap<String, List<FakeStoreProduct>> byPartition) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byPartition.forEach((key, items) -> {
+            digest.update(key.getBytes(StandardCharsets.UTF_8));
+            for (FakeStoreProduct s : items) {
+                String row = s.id() + "\u0000" + s.title() + "\u0000" + (s.price() == null ? "" : s.price().toPlainString())
+                        + "\u0000" + s.category() + "\u0000" + s.image() + "\u0000" + s.description() + "\n";
+                digest.update(row.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String truncate(String s) {
+        return s.length() <= 1000 ? s : s.substring(0, 1000);
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicInteger n = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.shutdownNow();
+        partitions.shutdownNow();
+    }
+
+    /** A running or finished job; completion yields the number of upserted products. */
+    public static final class Job {
+        private final String id;
+        private final Instant startedAt = Instant.now();
+        private final long startNanos = System.nanoTime();
+        private final List<Part> parts = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<Integer> completion = new CompletableFuture<>();
+        private volatile String state = "RUNNING";
+        private volatile String resumedFrom;
+        private volatile long fetchMillis;
+        private volatile int removed;
+        private volatile Instant finishedAt;
+        private volatile long elapsedMillis = -1;
+        private volatile String error;
+
+        private Job(String id) {
+            this.id = id;
+        }
+
+        public CompletableFuture<Integer> completion() {
+            return completion;
+        }
+
+        private void finish(String state, int upserts, Throwable failure) {
+            this.elapsedMillis = millisSince(startNanos);
+            this.finishedAt = Instant.now();
+            this.state = state;
+            if (failure != null) {
+                this.error = failure.toString();
+                completion.completeExceptionally(failure);
+            } else {
+                completion.complete(upserts);
+            }
+        }
+
+        SyncJobStatus status() {
+            int total = 0;
+            int committed = 0;
+            int written = 0;
+            int unchanged = 0;
+            List<SyncJobStatus.Partition> out = new ArrayList<>(parts.size());
+            for (Part p : parts) {
+                total += p.total;
+                committed += p.committed;
+                unchanged += p.unchanged;
+                written += p.committed - p.resumedAt;
+                out.add(new SyncJobStatus.Partition(p.key, p.total, p.committed, p.state, p.durationMillis, p.error));
+            }
+            long elapsed = elapsedMillis >= 0 ? elapsedMillis : millisSince(startNanos);
+            double perSecond = elapsed > 0 ? written * 1000.0 / elapsed : 0;
+            String jobId = resumedFrom != null ? resumedFrom : id;
+            return new SyncJobStatus(jobId, state, resumedFrom != null, startedAt, finishedAt, fetchMillis,
+                    total, committed, unchanged, removed, perSecond, out, error);
+        }
+    }
+
+    // Mutated only by the partition's worker thread; read by status()
+    private static final class Part {
+        final String key;
+        final int total;
+        final int resumedAt;
+        volatile int committed;
+        volatile int upserts;
+        volatile int unchanged;
+        volatile String state = "PENDING";
+        volatile long durationMillis;
+        volatile String error;
+
+        Part(String key, int total, int committed) {
+            this.key = key;
+            this.total = total;
+            this.resumedAt = committed;
+            this.committed = committed;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.demo.product;
+
+import java.time.Instant;
+import java.util.List;
+
+// Progress of a partitioned sync job as reported by /api/sync/jobs
+public record SyncJobStatus(
+        String jobId,
+        String state,
+        boolean resumed,
+        Instant startedAt,
+        Instant finishedAt,
+        long fetchMillis,
+        int total,
+        int committed,
+        int unchanged,
+        int removed,
+        double itemsPerSecond,
+        List<Partition> partitions,
+        String error
+) {
+    public record Partition(String key, int total, int committed, String state, long durationMillis, String error) {}
+}
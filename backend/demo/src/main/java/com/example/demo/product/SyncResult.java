@@ -0,0 +1,26 @@
+package com.example.demo.product;
+
+// Outcome of a sync, with wall time spent in each phase.
+// unchanged items matched their stored content hash and were not written; removed products were
+// missing from a full feed and tombstoned. commitMillis includes the after-commit refresh of the
+// search index and read model.
+public record SyncResult(
+        int fetched,
+        int inserted,
+        int updated,
+        int unchanged,
+        int removed,
+        long fetchMillis,
+        long preloadMillis,
+        long writeMillis,
+        long commitMillis
+) {
+    public int upserts() {
+        return inserted + updated;
+    }
+
+    // Rows the sync wrote; zero means caches and derived views are still current
+    public int changed() {
+        return inserted + updated + removed;
+    }
+}
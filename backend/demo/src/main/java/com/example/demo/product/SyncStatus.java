@@ -0,0 +1,11 @@
+package com.example.demo.product;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Snapshot of catalog freshness for /api/sync/status.
+ * ageSeconds is measured from the last successful upstream check and is null before the first one.
+ */
+public record SyncStatus(long generation, Instant lastChangedAt, Instant lastSyncedAt,
+                         Long ageSeconds, Set<String> inFlight, String lastError) {}
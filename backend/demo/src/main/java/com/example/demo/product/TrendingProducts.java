@@ -0,0 +1,238 @@
+package com.example.demo.product;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Products most added to carts over the last 5 minutes, hour and day. Cart stores call record on
+ * the request thread, which only bumps lock-free count-min sketch counters (one sliding sketch per
+ * window) and, the first time a product shows up, adds it to the candidate set. A scheduled refresh
+ * scores the candidates against each window, keeps the top catalog.trending.top per window overall
+ * and per category in bounded heaps, and resolves them to ProductDtos in one lookup; requests are
+ * then answered from that snapshot without touching the database or the cart tables.
+ * Counts live in memory only and start empty after a restart.
+ */
+@Component
+public class TrendingProducts {
+
+    private static final Logger log = LoggerFactory.getLogger(TrendingProducts.class);
+
+    private static final int CHUNK = 1000;
+
+    // Slice counts: 30s slices for 5m, 5m for 1h and 1h for 24h
+    public enum Window {
+        FIVE_MINUTES("5m", Duration.ofMinutes(5), 10),
+        HOUR("1h", Duration.ofHours(1), 12),
+        DAY("24h", Duration.ofHours(24), 24);
+
+        private final String label;
+        private final Duration length;
+        private final int slices;
+
+        Window(String label, Duration length, int slices) {
+            this.label = label;
+            this.length = length;
+            this.slices = slices;
+        }
+
+        public static Window parse(String value) {
+            for (Window w : values()) {
+                if (w.label.equalsIgnoreCase(value)) return w;
+            }
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "window must be 5m, 1h or 24h");
+        }
+    }
+
+    private record Scored(long productId, long score) {}
+
+    // Ranked products of one window: all categories, and per lower-cased category name
+    private record Ranking(List<ProductDto> all, Map<String, List<ProductDto>> byCategory) {
+        static final Ranking EMPTY = new Ranking(List.of(), Map.of());
+    }
+
+    private final ProductRepository repo;
+    private final boolean enabled;
+    private final int top;
+    private final int maxCandidates;
+    private final EnumMap<Window, SlidingCountMinSketch> sketches = new EnumMap<>(Window.class);
+
+    private final Set<Long> candidates = ConcurrentHashMap.newKeySet();
+    // Category of each candidate, lower-cased; dropped after a sync in case products moved
+    private final Map<Long, String> categories = new ConcurrentHashMap<>();
+    private volatile Map<Window, Ranking> rankings = Map.of();
+
+    public TrendingProducts(ProductRepository repo,
+                            @Value("${catalog.trending.enabled:true}") boolean enabled,
+                            @Value("${catalog.trending.width:2048}") int width,
+                            @Value("${catalog.trending.depth:4}") int depth,
+                            @Value("${catalog.trending.top:50}") int top,
+                            @Value("${catalog.trending.max-candidates:10000}") int maxCandidates) {
+        this.repo = repo;
+        this.enabled = enabled;
+        this.top = top;
+        this.maxCandidates = maxCandidates;
+        for (Window w : Window.values()) {
+            sketches.put(w, new SlidingCountMinSketch(w.length.toMillis(), w.slices, depth, width));
+        }
+    }
+
+    /** Counts units of the product added to a cart (quantity decreases pass 0 or less and are ignored). */
+    public void record(Long productId, int units) {
+        if (!enabled || units <= 0) return;
+        long now = System.currentTimeMillis();
+        for (SlidingCountMinSketch sketch : sketches.values()) sketch.add(productId, units, now);
+        if (!candidates.contains(productId)) candidates.add(productId);
+    }
+
+    /** Like record, but inside a transaction only once it commits, so rolled back cart changes never count. */
+    public void recordAfterCommit(Long productId, int units) {
+        if (!enabled || units <= 0) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(productId, units);
+                }
+            });
+        } else {
+            record(productId, units);
+        }
+    }
+
+    /** Up to limit products of the window, most added first, optionally of one category. */
+    public List<ProductDto> top(String window, String category, int limit) {
+        Ranking ranking = rankings.getOrDefault(Window.parse(window), Ranking.EMPTY);
+        List<ProductDto> ranked = category == null || category.isBlank()
+                ? ranking.all()
+                : ranking.byCategory().getOrDefault(category.trim().toLowerCase(Locale.ROOT), List.of());
+        return ranked.subList(0, Math.max(0, Math.min(limit, ranked.size())));
+    }
+
+    @Scheduled(fixedDelayString = "${catalog.trending.refresh-interval-ms:5000}")
+    public synchronized void refresh() {
+        if (!enabled || candidates.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        resolveCategories();
+        pruneCandidates(now);
+
+        Map<Window, PriorityQueue<Scored>> overall = new EnumMap<>(Window.class);
+        Map<Window, Map<String, PriorityQueue<Scored>>> perCategory = new EnumMap<>(Window.class);
+        Set<Long> selected = new HashSet<>();
+        for (Window w : Window.values()) {
+            SlidingCountMinSketch sketch = sketches.get(w);
+            PriorityQueue<Scored> all = heap();
+            Map<String, PriorityQueue<Scored>> byCategory = new HashMap<>();
+            for (Long id : candidates) {
+                String category = categories.get(id);
+                if (category == null) continue;
+                long score = sketch.estimate(id, now);
+                if (score == 0) continue;
+                Scored s = new Scored(id, score);
+                offer(all, s);
+                if (!category.isEmpty()) offer(byCategory.computeIfAbsent(category, k -> heap()), s);
+            }
+            all.forEach(s -> selected.add(s.productId()));
+            byCategory.values().forEach(h -> h.forEach(s -> selected.add(s.productId())));
+            overall.put(w, all);
+            perCategory.put(w, byCategory);
+        }
+
+        // Everything shown is looked up together, so stock and prices are as of this refresh
+        Map<Long, ProductDto> dtos = new HashMap<>();
+        for (ProductDto dto : lookup(new ArrayList<>(selected))) dtos.put(dto.id(), dto);
+        Map<Window, Ranking> next = new EnumMap<>(Window.class);
+        for (Window w : Window.values()) {
+            Map<String, List<ProductDto>> byCategory = new HashMap<>();
+            perCategory.get(w).forEach((category, heap) -> byCategory.put(category, ranked(heap, dtos)));
+            next.put(w, new Ranking(ranked(overall.get(w), dtos), byCategory));
+        }
+        rankings = next;
+    }
+
+    // Categories of candidates seen since the last refresh; unknown or removed products stop being candidates
+    private void resolveCategories() {
+        List<Long> unknown = new ArrayList<>();
+        for (Long id : candidates) {
+            if (!categories.containsKey(id)) unknown.add(id);
+        }
+        for (ProductDto dto : lookup(unknown)) {
+            categories.put(dto.id(), dto.category() == null ? "" : dto.category().toLowerCase(Locale.ROOT));
+        }
+        for (Long id : unknown) {
+            if (!categories.containsKey(id)) candidates.remove(id);
+        }
+    }
+
+    // Products not added for a whole day drop out; past max-candidates the least added ones go too
+    private void pruneCandidates(long now) {
+        SlidingCountMinSketch day = sketches.get(Window.DAY);
+        List<Scored> scored = new ArrayList<>(candidates.size());
+        for (Long id : candidates) {
+            long score = day.estimate(id, now);
+            if (score == 0) {
+                candidates.remove(id);
+                categories.remove(id);
+            } else {
+                scored.add(new Scored(id, score));
+            }
+        }
+        if (scored.size() <= maxCandidates) return;
+        scored.sort(Comparator.comparingLong(Scored::score));
+        for (Scored s : scored.subList(0, scored.size() - maxCandidates)) {
+            candidates.remove(s.productId());
+            categories.remove(s.productId());
+        }
+        log.debug("Trimmed trending candidates to {}", maxCandidates);
+    }
+
+    // Chunked to keep the IN lists well under driver bind-parameter limits
+    private List<ProductDto> lookup(List<Long> ids) {
+        List<ProductDto> out = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += CHUNK) {
+            out.addAll(repo.findDtosByIdIn(ids.subList(from, Math.min(from + CHUNK, ids.size()))));
+        }
+        return out;
+    }
+
+    // Min-heap on score, so the weakest of the current top is the one evicted
+    private static PriorityQueue<Scored> heap() {
+        return new PriorityQueue<>(Comparator.comparingLong(Scored::score).thenComparing(Scored::productId, Comparator.reverseOrder()));
+    }
+
+    private void offer(PriorityQueue<Scored> heap, Scored s) {
+        if (heap.size() < top) {
+            heap.add(s);
+        } else if (heap.comparator().compare(s, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(s);
+        }
+    }
+
+    private static List<ProductDto> ranked(PriorityQueue<Scored> heap, Map<Long, ProductDto> dtos) {
+        List<Scored> order = new ArrayList<>(heap);
+        order.sort(heap.comparator().reversed());
+        List<ProductDto> out = new ArrayList<>(order.size());
+        for (Scored s : order) {
+            ProductDto dto = dtos.get(s.productId());
+            if (dto != null) out.add(dto);
+        }
+        return List.copyOf(out);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogSynced(CatalogSyncedEvent event) {
+        categories.clear();
+    }
+}
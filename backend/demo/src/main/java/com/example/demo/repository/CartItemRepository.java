@@ -2,12 +2,53 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.CartItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartItemRepository extends JpaRepository<CartItem, Long> {
     Optional<CartItem> findByCartIdAndProductId(Long cartId, Long productId);
-}
 
+    // Carts holding a line whose snapshot no longer matches the catalog
+    @Query(value = """
+            SELECT DISTINCT ci.cart_id FROM cart_items ci JOIN products p ON p.id = ci.product_id
+            WHERE ci.unit_price_cents <> CAST(ROUND(p.price * 100) AS BIGINT)
+               OR ci.product_name <> p.name
+               OR COALESCE(ci.product_image_url, '') <> COALESCE(p.image_url, '')""", nativeQuery = true)
+    List<Long> findCartIdsWithDrift();
+
+    @Modifying
+    @Query(value = """
+            UPDATE cart_items ci SET
+                unit_price_cents = (SELECT CAST(ROUND(p.price * 100) AS BIGINT) FROM products p WHERE p.id = ci.product_id),
+                product_name = (SELECT p.name FROM products p WHERE p.id = ci.product_id),
+                product_image_url = (SELECT p.image_url FROM products p WHERE p.id = ci.product_id)
+            WHERE ci.cart_id IN (:cartIds)""", nativeQuery = true)
+    int refreshSnapshots(@Param("cartIds") Collection<Long> cartIds);
+
+    @Modifying
+    @Query(value = """
+            UPDATE carts c SET
+                total_amount_cents = (SELECT COALESCE(SUM(ci.unit_price_cents * ci.quantity), 0) FROM cart_items ci WHERE ci.cart_id = c.id),
+                total_items = (SELECT COALESCE(SUM(ci.quantity), 0) FROM cart_items ci WHERE ci.cart_id = c.id)
+            WHERE c.id IN (:cartIds)""", nativeQuery = true)
+    int recalculateTotals(@Param("cartIds") Collection<Long> cartIds);
+
+    // (cart_id, product_id) of every line of the given carts
+    @Query(value = "SELECT cart_id, product_id FROM cart_items WHERE cart_id IN (:cartIds)", nativeQuery = true)
+    List<Object[]> findProductIdsByCartIdIn(@Param("cartIds") Collection<Long> cartIds);
+
+    // Lines of the given carts that are still idle, deleted ahead of the carts themselves
+    @Modifying
+    @Query(value = """
+            DELETE FROM cart_items WHERE cart_id IN (
+                SELECT c.id FROM carts c WHERE c.id IN (:cartIds) AND c.updated_at < :cutoff)""", nativeQuery = true)
+    int deleteForIdleCarts(@Param("cartIds") Collection<Long> cartIds, @Param("cutoff") LocalDateTime cutoff);
+}
@@ -2,17 +2,46 @@ package com.example.demo.repository;
 
 import com.example.demo.entity.Cart;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface CartRepository extends JpaRepository<Cart, Long> {
     Optional<Cart> findBySessionId(String sessionId);
 
-    @Query("SELECT c FROM Cart c LEFT JOIN FETCH c.items ci LEFT JOIN FETCH ci.product WHERE c.sessionId = :sessionId")
+    // Lines carry their own price/name snapshot, so products are not joined
+    @Query("SELECT c FROM Cart c LEFT JOIN FETCH c.items WHERE c.sessionId = :sessionId")
     Optional<Cart> findBySessionIdWithItems(@Param("sessionId") String sessionId);
+
+    // Creates the session's cart unless another request already did; a duplicate is skipped instead of failing the transaction
+    @Modifying
+    @Query(value = """
+            INSERT INTO carts (session_id, created_at, updated_at, total_amount_cents, total_items)
+            VALUES (:sessionId, :now, :now, 0, 0) ON CONFLICT DO NOTHING""", nativeQuery = true)
+    int insertIfAbsent(@Param("sessionId") String sessionId, @Param("now") LocalDateTime now);
+
+    // Serializes the mutations of one session's cart; other sessions never wait on it
+    @Query(value = "SELECT id FROM carts WHERE session_id = :sessionId FOR UPDATE", nativeQuery = true)
+    List<Long> lockBySessionId(@Param("sessionId") String sessionId);
+
+    // Next batch of carts untouched since the cutoff, in id order after the last one seen
+    @Query(value = "SELECT id FROM carts WHERE updated_at < :cutoff AND id > :after ORDER BY id LIMIT :limit", nativeQuery = true)
+    List<Long> findIdleIds(@Param("cutoff") LocalDateTime cutoff, @Param("after") long after, @Param("limit") int limit);
+
+    // Locks the carts of a reaper batch that are still idle, so their lines cannot change before they are deleted
+    @Query(value = "SELECT id FROM carts WHERE id IN (:ids) AND updated_at < :cutoff FOR UPDATE", nativeQuery = true)
+    List<Long> lockIdle(@Param("ids") Collection<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+
+    // Rechecks the cutoff, so a cart used since it was selected survives
+    @Modifying
+    @Query(value = "DELETE FROM carts WHERE id IN (:ids) AND updated_at < :cutoff", nativeQuery = true)
+    int deleteIdle(@Param("ids") Collection<Long> ids, @Param("cutoff") LocalDateTime cutoff);
 }
 
@@ -0,0 +1,52 @@
+package com.example.demo.service;
+
+import com.example.demo.product.CatalogSyncedEvent;
+import com.example.demo.repository.CartItemRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+/**
+ * Cart lines keep the price and name captured when they were added. After each catalog sync
+ * the lines that drifted from the catalog are re-snapshotted and their carts' running totals
+ * recomputed, all in set-based statements.
+ */
+@Component
+public class CartPriceReconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(CartPriceReconciler.class);
+
+    private static final int CHUNK = 1000;
+
+    private final CartItemRepository cartItemRepository;
+
+    public CartPriceReconciler(CartItemRepository cartItemRepository) {
+        this.cartItemRepository = cartItemRepository;
+    }
+
+    @Order(0)
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onCatalogSynced(CatalogSyncedEvent event) {
+        reconcile();
+    }
+
+    public int reconcile() {
+        List<Long> cartIds = cartItemRepository.findCartIdsWithDrift();
+        if (cartIds.isEmpty()) return 0;
+        // Chunked to keep the IN lists well under driver bind-parameter limits
+        for (int from = 0; from < cartIds.size(); from += CHUNK) {
+            List<Long> chunk = cartIds.subList(from, Math.min(from + CHUNK, cartIds.size()));
+            cartItemRepository.refreshSnapshots(chunk);
+            cartItemRepository.recalculateTotals(chunk);
+        }
+        log.info("Repriced {} carts after catalog sync", cartIds.size());
+        return cartIds.size();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.service;
+
+import com.example.demo.product.RelatedProducts;
+import com.example.demo.repository.CartItemRepository;
+import com.example.demo.repository.CartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deletes carts nobody has changed for cart.reaper.ttl, with their lines. The session cookie
+ * lives 7 days from the cart's creation, so by default a reaped cart could no longer be reached.
+ * Carts are walked in id order and removed in batches of cart.reaper.batch-size, each in its own
+ * short transaction, so the reaper never holds many row locks or one long transaction; every
+ * batch locks and rechecks updated_at, so a cart used while the reaper runs is kept. The products
+ * of every deleted cart are reported to RelatedProducts, so its pair counts drop with the cart.
+ */
+@Component
+public class CartReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(CartReaper.class);
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final RelatedProducts related;
+    private final TransactionTemplate tx;
+    private final Duration ttl;
+    private final int batchSize;
+    private final Counter cartsDeleted;
+    private final Counter itemsDeleted;
+    private final Timer runTimer;
+
+    public CartReaper(CartRepository cartRepository,
+                      CartItemRepository cartItemRepository,
+                      RelatedProducts related,
+                      PlatformTransactionManager txManager,
+                      MeterRegistry registry,
+                      @Value("${cart.reaper.ttl:7d}") Duration ttl,
+                      @Value("${cart.reaper.batch-size:500}") int batchSize) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.related = related;
+        this.tx = new TransactionTemplate(txManager);
+        this.ttl = ttl;
+        this.batchSize = batchSize;
+        this.cartsDeleted = Counter.builder("cart.reaper.deleted")
+                .description("Rows removed by the idle-cart reaper")
+                .tag("table", "carts")
+                .register(registry);
+        this.itemsDeleted = Counter.builder("cart.reaper.deleted")
+                .description("Rows removed by the idle-cart reaper")
+                .tag("table", "cart_items")
+                .register(registry);
+        this.runTimer = Timer.builder("cart.reaper.run")
+                .description("One pass of the idle-cart reaper")
+                .register(registry);
+    }
+
+    @Scheduled(initialDelayString = "${cart.reaper.interval-ms:600000}", fixedDelayString = "${cart.reaper.interval-ms:600000}")
+    public void scheduled() {
+        reap();
+    }
+
+    /** Deletes every cart idle for longer than the TTL and returns how many went. */
+    public long reap() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(ttl);
+        long carts = 0;
+        long items = 0;
+        Timer.Sample sample = Timer.start();
+        long after = 0;
+        for (;;) {
+            List<Long> ids = cartRepository.findIdleIds(cutoff, after, batchSize);
+            if (ids.isEmpty()) break;
+            after = ids.get(ids.size() - 1);
+            int[] deleted = tx.execute(status -> deleteBatch(ids, cutoff));
+            items += deleted[0];
+            carts += deleted[1];
+            itemsDeleted.increment(deleted[0]);
+            cartsDeleted.increment(deleted[1]);
+            if (ids.size() < batchSize) break;
+        }
+        sample.stop(runTimer);
+        if (carts > 0) log.info("Reaped {} carts idle since {} ({} lines)", carts, cutoff, items);
+        return carts;
+    }
+
+    // Caller is in the batch's transaction; returns the deleted line and cart counts
+    private int[] deleteBatch(List<Long> ids, LocalDateTime cutoff) {
+        List<Long> idle = cartRepository.lockIdle(ids, cutoff);
+        if (idle.isEmpty()) return new int[]{0, 0};
+        Map<Long, Set<Long>> products = new HashMap<>();
+        for (Object[] row : cartItemRepository.findProductIdsByCartIdIn(idle)) {
+            products.computeIfAbsent(((Number) row[0]).longValue(), id -> new HashSet<>()).add(((Number) row[1]).longValue());
+        }
+        // Counted down once the deletes commit
+        for (Set<Long> cart : products.values()) related.cartChangedAfterCommit(cart, Set.of());
+        return new int[]{cartItemRepository.deleteForIdleCarts(idle, cutoff), cartRepository.deleteIdle(idle, cutoff)};
+    }
+}
@@ -1,60 +1,88 @@
 package com.example.demo.service;
 
 import com.example.demo.dto.AddToCartRequest;
+import com.example.demo.dto.CartOperationRequest;
 import com.example.demo.dto.CartResponse;
 import com.example.demo.entity.Cart;
 import com.example.demo.entity.CartItem;
+import com.example.demo.product.InventoryReservations;
 import com.example.demo.product.Product;
 import com.example.demo.product.ProductRepository;
+import com.example.demo.product.RelatedProducts;
+import com.example.demo.product.TrendingProducts;
 import com.example.demo.repository.CartItemRepository;
 import com.example.demo.repository.CartRepository;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
-import java.util.UUID;
+import java.time.LocalDateTime;
+import java.util.*;
 
 @Service
 @Transactional
-public class CartService {
+public class CartService implements CartStore {
 
     private final CartRepository cartRepository;
     private final CartItemRepository cartItemRepository;
     private final ProductRepository productRepository;
+    private final InventoryReservations inventory;
+    private final TrendingProducts trending;
+    private final RelatedProducts related;
 
     public CartService(
             CartRepository cartRepository,
             CartItemRepository cartItemRepository,
-            ProductRepository productRepository) {
+            ProductRepository productRepository,
+            InventoryReservations inventory,
+            TrendingProducts trending,
+            RelatedProducts related) {
         this.cartRepository = cartRepository;
         this.cartItemRepository = cartItemRepository;
         this.productRepository = productRepository;
+        this.inventory = inventory;
+        this.trending = trending;
+        this.related = related;
     }
 
+    @Override
     public CartResponse getCart(String sessionId) {
-        Cart cart = getOrCreateCart(sessionId);
-        return new CartResponse(cart);
+        inventory.touch(sessionId);
+        // Reading never creates the row, so first visits do not leave empty carts behind
+        return cartRepository.findBySessionIdWithItems(sessionId)
+                .map(cart -> {
+                    cart.ensureSnapshots();
+                    return new CartResponse(cart);
+                })
+                .orElseGet(() -> new CartResponse(null, sessionId, List.of()));
     }
 
+    @Override
     public CartResponse addToCart(String sessionId, AddToCartRequest request) {
         Cart cart = getOrCreateCart(sessionId);
 
         // Load the product once, so it's available in both branches
         Product product = productRepository.findById(request.getProductId())
+                .filter(p -> !p.isRemoved())
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + request.getProductId()));
 
         // Check if item already exists in cart
         Optional<CartItem> existingItem = cartItemRepository.findByCartIdAndProductId(cart.getId(), product.getId());
 
+        // Reserve the line's new quantity before changing anything; fails with 409 when stock ran out
+        int quantity = existingItem.map(CartItem::getQuantity).orElse(0) + request.getQuantity();
+        inventory.hold(sessionId, product.getId(), quantity);
+        trending.recordAfterCommit(product.getId(), request.getQuantity());
+
         if (existingItem.isPresent()) {
             CartItem item = existingItem.get();
-            item.setQuantity(item.getQuantity() + request.getQuantity());
-            cartItemRepository.save(item);
+            cart.changeQuantity(item, quantity);
         } else {
             // Create new cart item using the loaded product
+            Set<Long> before = productIds(cart);
             CartItem newItem = new CartItem(cart, product, request.getQuantity());
             cart.addItem(newItem);
             cartItemRepository.save(newItem);
+            related.cartChangedAfterCommit(before, productIds(cart));
         }
 
         cartRepository.save(cart);
@@ -63,55 +91,123 @@ public class CartService {
 
 
 
+    @Override
     public CartResponse updateCartItem(String sessionId, Long productId, int quantity) {
         Cart cart = getOrCreateCart(sessionId);
 
         CartItem item = cartItemRepository.findByCartIdAndProductId(cart.getId(), productId)
                 .orElseThrow(() -> new RuntimeException("Cart item not found"));
+        inventory.hold(sessionId, productId, Math.max(quantity, 0));
+        trending.recordAfterCommit(productId, quantity - item.getQuantity());
 
         if (quantity <= 0) {
+            Set<Long> before = productIds(cart);
             cart.removeItem(item);
             cartItemRepository.delete(item);
+            related.cartChangedAfterCommit(before, productIds(cart));
         } else {
-            item.setQuantity(quantity);
-            cartItemRepository.save(item);
+            cart.changeQuantity(item, quantity);
         }
 
         cartRepository.save(cart);
         return new CartResponse(cart);
     }
 
+    @Override
     public CartResponse removeFromCart(String sessionId, Long productId) {
         Cart cart = getOrCreateCart(sessionId);
 
         CartItem item = cartItemRepository.findByCartIdAndProductId(cart.getId(), productId)
                 .orElseThrow(() -> new RuntimeException("Cart item not found"));
+        inventory.hold(sessionId, productId, 0);
 
+        Set<Long> before = productIds(cart);
         cart.removeItem(item);
         cartItemRepository.delete(item);
         cartRepository.save(cart);
+        related.cartChangedAfterCommit(before, productIds(cart));
 
         return new CartResponse(cart);
     }
 
+    @Override
     public void clearCart(String sessionId) {
+        inventory.releaseAll(sessionId);
         Optional<Cart> cartOpt = cartRepository.findBySessionId(sessionId);
         if (cartOpt.isPresent()) {
             Cart cart = cartOpt.get();
-            cart.getItems().clear();
+            Set<Long> before = productIds(cart);
+            cart.clearItems();
             cartRepository.save(cart);
+            related.cartChangedAfterCommit(before, Set.of());
         }
     }
 
-    private Cart getOrCreateCart(String sessionId) {
-        return cartRepository.findBySessionIdWithItems(sessionId)
-                .orElseGet(() -> {
-                    Cart newCart = new Cart(sessionId);
-                    return cartRepository.save(newCart);
-                });
+    @Override
+    public CartResponse applyBatch(String sessionId, List<CartOperationRequest> operations) {
+        Cart cart = getOrCreateCart(sessionId);
+        Map<Long, CartItem> lines = new HashMap<>();
+        Map<Long, Integer> current = new HashMap<>();
+        for (CartItem item : cart.getItems()) {
+            lines.put(item.getProductId(), item);
+            current.put(item.getProductId(), item.getQuantity());
+        }
+        // Resulting quantity per product, reserved in one go before the cart changes
+        Map<Long, Integer> quantities = CartStore.netQuantities(current, operations);
+
+        // One lookup for every product that ends up with a new line
+        Set<Long> missing = new HashSet<>();
+        quantities.forEach((productId, quantity) -> {
+            if (quantity > 0 && !lines.containsKey(productId)) missing.add(productId);
+        });
+        Map<Long, Product> products = new HashMap<>();
+        for (Product p : productRepository.findAllById(missing)) {
+            if (!p.isRemoved()) products.put(p.getId(), p);
+        }
+        for (Long id : missing) {
+            if (!products.containsKey(id)) throw new RuntimeException("Product not found with id: " + id);
+        }
+
+        inventory.hold(sessionId, quantities);
+
+        Set<Long> before = productIds(cart);
+        quantities.forEach((productId, quantity) -> {
+            CartItem item = lines.get(productId);
+            trending.recordAfterCommit(productId, quantity - (item == null ? 0 : item.getQuantity()));
+            if (quantity == 0) {
+                if (item != null) cart.removeItem(item);
+            } else if (item == null) {
+                cart.addItem(new CartItem(cart, products.get(productId), quantity));
+            } else {
+                cart.changeQuantity(item, quantity);
+            }
+        });
+
+        cart.setUpdatedAt(LocalDateTime.now());
+        cartRepository.save(cart);
+        related.cartChangedAfterCommit(before, productIds(cart));
+        return new CartResponse(cart);
     }
 
-    public String generateSessionId() {
-        return UUID.randomUUID().toString();
+    private static Set<Long> productIds(Cart cart) {
+        Set<Long> ids = new HashSet<>();
+        for (CartItem item : cart.getItems()) ids.add(item.getProductId());
+        return ids;
+    }
+
+    // Locks the session's cart row for the rest of the transaction, so concurrent requests of one
+    // session (double clicks, parallel tabs) apply one after another instead of duplicating lines
+    private Cart getOrCreateCart(String sessionId) {
+        if (cartRepository.lockBySessionId(sessionId).isEmpty()) {
+            // Concurrent first requests of a session all get here; the losers of the insert lock the winner's row
+            cartRepository.insertIfAbsent(sessionId, LocalDateTime.now());
+            cartRepository.lockBySessionId(sessionId);
+        }
+        Cart cart = cartRepository.findBySessionIdWithItems(sessionId)
+                .orElseThrow(() -> new RuntimeException("Cart not found for session: " + sessionId));
+        cart.ensureSnapshots();
+        // Every caller changes the lines, and with them this instance's holds
+        cart.setHeldBy(inventory.instanceId());
+        return cart;
     }
 }
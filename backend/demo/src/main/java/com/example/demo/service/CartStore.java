@@ -0,0 +1,54 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.AddToCartRequest;
+import com.example.demo.dto.CartOperationRequest;
+import com.example.demo.dto.CartResponse;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Cart operations keyed by the CART_SESSION_ID cookie.
+ * CartService is the default, database-backed implementation; WriteBehindCartStore keeps
+ * active carts in memory when cart.store.mode=write-behind.
+ */
+public interface CartStore {
+
+    CartResponse getCart(String sessionId);
+
+    CartResponse addToCart(String sessionId, AddToCartRequest request);
+
+    CartResponse updateCartItem(String sessionId, Long productId, int quantity);
+
+    CartResponse removeFromCart(String sessionId, Long productId);
+
+    void clearCart(String sessionId);
+
+    /** Applies all operations atomically and returns the resulting cart. */
+    CartResponse applyBatch(String sessionId, List<CartOperationRequest> operations);
+
+    default String generateSessionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Resulting quantity of every product a batch mentions, in first-mention order, given the cart's
+     * current quantities. Operations on one product fold into a single net change, so [REMOVE p, ADD p]
+     * updates p's existing line instead of adding a new one; 0 means the line goes.
+     */
+    static Map<Long, Integer> netQuantities(Map<Long, Integer> current, List<CartOperationRequest> operations) {
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (CartOperationRequest op : operations) {
+            Long productId = op.getProductId();
+            int quantity = quantities.containsKey(productId) ? quantities.get(productId) : current.getOrDefault(productId, 0);
+            quantities.put(productId, Math.max(0, switch (op.getOp()) {
+                case ADD -> quantity + op.getQuantity();
+                case SET -> op.getQuantity();
+                case REMOVE -> 0;
+            }));
+        }
+        return quantities;
+    }
+}
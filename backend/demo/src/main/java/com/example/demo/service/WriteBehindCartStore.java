@@ -0,0 +1,451 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.AddToCartRequest;
+import com.example.demo.dto.CartOperationRequest;
+import com.example.demo.dto.CartItemResponse;
+import com.example.demo.dto.CartResponse;
+import com.example.demo.entity.Cart;
+import com.example.demo.entity.CartItem;
+import com.example.demo.product.CatalogSyncedEvent;
+import com.example.demo.product.InventoryReservations;
+import com.example.demo.product.Money;
+import com.example.demo.product.Product;
+import com.example.demo.product.ProductRepository;
+import com.example.demo.product.RelatedProducts;
+import com.example.demo.product.TrendingProducts;
+import com.example.demo.repository.CartRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Keeps active carts in memory and writes them behind to carts/cart_items.
+ * Mutations only touch the in-memory cart under a striped per-session lock and mark it dirty;
+ * a scheduled flush persists dirty carts in batches (one transaction per batch) and on shutdown,
+ * so at most one flush interval of changes is at risk. A failed batch is retried cart by cart, so
+ * one cart the database keeps rejecting does not hold back the others. Carts are loaded from the
+ * database on a miss and evicted once clean, idle for longer than the idle timeout and not being
+ * written.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(name = "cart.store.mode", havingValue = "write-behind")
+public class WriteBehindCartStore implements CartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindCartStore.class);
+
+    private final CartRepository cartRepository;
+    private final ProductRepository productRepository;
+    private final InventoryReservations inventory;
+    private final TrendingProducts trending;
+    private final RelatedProducts related;
+    private final TransactionTemplate tx;
+    private final long idleTimeoutMillis;
+    private final int flushBatchSize;
+    private final int maxWriteAttempts;
+    private final Timer flushTimer;
+
+    private final ConcurrentHashMap<String, CartState> active = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes;
+
+    public WriteBehindCartStore(CartRepository cartRepository,
+                                ProductRepository productRepository,
+                                InventoryReservations inventory,
+                                TrendingProducts trending,
+                                RelatedProducts related,
+                                PlatformTransactionManager txManager,
+                                MeterRegistry registry,
+                                @Value("${cart.store.idle-timeout-ms:1800000}") long idleTimeoutMillis,
+                                @Value("${cart.store.flush-batch-size:100}") int flushBatchSize,
+                                @Value("${cart.store.lock-stripes:64}") int lockStripes,
+                                @Value("${cart.store.max-write-attempts:5}") int maxWriteAttempts) {
+        this.cartRepository = cartRepository;
+        this.productRepository = productRepository;
+        this.inventory = inventory;
+        this.trending = trending;
+        this.related = related;
+        this.tx = new TransactionTemplate(txManager);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.flushBatchSize = flushBatchSize;
+        this.maxWriteAttempts = maxWriteAttempts;
+        this.stripes = new ReentrantLock[lockStripes];
+        for (int i = 0; i < lockStripes; i++) stripes[i] = new ReentrantLock();
+        this.flushTimer = Timer.builder("cart.store.flush")
+                .description("Write-behind flush of dirty carts, one sample per batch")
+                .register(registry);
+        registry.gauge("cart.store.active", active, Map::size);
+    }
+
+    private static final class Line {
+        Long itemId;
+        final Long productId;
+        final String name;
+        final String imageUrl;
+        final long priceCents;
+        int quantity;
+
+        Line(Long itemId, Long productId, String name, String imageUrl, long priceCents, int quantity) {
+            this.itemId = itemId;
+            this.productId = productId;
+            this.name = name;
+            this.imageUrl = imageUrl;
+            this.priceCents = priceCents;
+            this.quantity = quantity;
+        }
+    }
+
+    // Guarded by the session's stripe lock
+    private static final class CartState {
+        final String sessionId;
+        Long cartId;
+        final LinkedHashMap<Long, Line> lines = new LinkedHashMap<>();
+        boolean dirty;
+        // Snapshots taken by flush and not yet written or failed; the cart is not evicted meanwhile
+        int writing;
+        // Failed writes in a row; once at maxWriteAttempts the cart is only retried after it changes
+        int failedWrites;
+        long lastAccess = System.currentTimeMillis();
+
+        CartState(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        CartResponse toResponse() {
+            List<CartItemResponse> items = new ArrayList<>(lines.size());
+            for (Line l : lines.values()) {
+                items.add(new CartItemResponse(l.itemId, l.productId, l.name, l.imageUrl, Money.fromCents(l.priceCents), l.quantity));
+            }
+            return new CartResponse(cartId, sessionId, items);
+        }
+    }
+
+    @Override
+    public CartResponse getCart(String sessionId) {
+        inventory.touch(sessionId);
+        return withCart(sessionId, CartState::toResponse);
+    }
+
+    @Override
+    public CartResponse addToCart(String sessionId, AddToCartRequest request) {
+        Long productId = request.getProductId();
+        return withCart(sessionId, cart -> {
+            Line line = cart.lines.get(productId);
+            if (line != null) {
+                inventory.hold(sessionId, productId, line.quantity + request.getQuantity());
+                line.quantity += request.getQuantity();
+            } else {
+                Product product = productRepository.findById(productId)
+                        .filter(p -> !p.isRemoved())
+                        .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
+                inventory.hold(sessionId, productId, request.getQuantity());
+                cart.lines.put(productId, new Line(null, productId, product.getName(), product.getImageUrl(),
+                        Money.toCents(product.getPrice()), request.getQuantity()));
+            }
+            trending.record(productId, request.getQuantity());
+            cart.dirty = true;
+            return cart.toResponse();
+        });
+    }
+
+    @Override
+    public CartResponse updateCartItem(String sessionId, Long productId, int quantity) {
+        return withCart(sessionId, cart -> {
+            Line line = cart.lines.get(productId);
+            if (line == null) throw new RuntimeException("Cart item not found");
+            inventory.hold(sessionId, productId, Math.max(quantity, 0));
+            trending.record(productId, quantity - line.quantity);
+            if (quantity <= 0) {
+                cart.lines.remove(productId);
+            } else {
+                line.quantity = quantity;
+            }
+            cart.dirty = true;
+            return cart.toResponse();
+        });
+    }
+
+    @Override
+    public CartResponse removeFromCart(String sessionId, Long productId) {
+        return withCart(sessionId, cart -> {
+            if (!cart.lines.containsKey(productId)) throw new RuntimeException("Cart item not found");
+            inventory.hold(sessionId, productId, 0);
+            cart.lines.remove(productId);
+            cart.dirty = true;
+            return cart.toResponse();
+        });
+    }
+
+    @Override
+    public void clearCart(String sessionId) {
+        withCart(sessionId, cart -> {
+            inventory.releaseAll(sessionId);
+            if (!cart.lines.isEmpty()) {
+                cart.lines.clear();
+                cart.dirty = true;
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public CartResponse applyBatch(String sessionId, List<CartOperationRequest> operations) {
+        return withCart(sessionId, cart -> {
+            // Resulting quantity per product, reserved in one go before the cart changes
+            Map<Long, Integer> current = new HashMap<>();
+            cart.lines.forEach((productId, line) -> current.put(productId, line.quantity));
+            Map<Long, Integer> quantities = CartStore.netQuantities(current, operations);
+
+            // Resolve every product that ends up with a new line before touching the cart, so it applies all or nothing
+            Set<Long> missing = new HashSet<>();
+            quantities.forEach((productId, quantity) -> {
+                if (quantity > 0 && !cart.lines.containsKey(productId)) missing.add(productId);
+            });
+            Map<Long, Product> products = new HashMap<>();
+            for (Product p : productRepository.findAllById(missing)) {
+                if (!p.isRemoved()) products.put(p.getId(), p);
+            }
+            for (Long id : missing) {
+                if (!products.containsKey(id)) throw new RuntimeException("Product not found with id: " + id);
+            }
+
+            inventory.hold(sessionId, quantities);
+
+            quantities.forEach((productId, quantity) -> {
+                Line line = cart.lines.get(productId);
+                trending.record(productId, quantity - (line == null ? 0 : line.quantity));
+                if (quantity == 0) {
+                    cart.lines.remove(productId);
+                } else if (line == null) {
+                    Product p = products.get(productId);
+                    cart.lines.put(p.getId(), new Line(null, p.getId(), p.getName(), p.getImageUrl(), Money.toCents(p.getPrice()), quantity));
+                } else {
+                    line.quantity = quantity;
+                }
+            });
+            cart.dirty = true;
+            return cart.toResponse();
+        });
+    }
+
+    private <T> T withCart(String sessionId, Function<CartState, T> action) {
+        ReentrantLock lock = stripe(sessionId);
+        lock.lock();
+        try {
+            CartState cart = active.get(sessionId);
+            boolean loaded = cart == null;
+            if (loaded) cart = load(sessionId);
+            cart.lastAccess = System.currentTimeMillis();
+            Set<Long> before = new HashSet<>(cart.lines.keySet());
+            T result = action.apply(cart);
+            if (!before.equals(cart.lines.keySet())) related.cartChangedAfterCommit(before, new HashSet<>(cart.lines.keySet()));
+            // A new session that still has nothing, e.g. one that only read its empty cart, is not kept
+            if (loaded && (cart.cartId != null || cart.dirty)) active.put(sessionId, cart);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Load-through on a miss; a session without a database cart starts empty and clean
+    private CartState load(String sessionId) {
+        CartState state = new CartState(sessionId);
+        cartRepository.findBySessionIdWithItems(sessionId).ifPresent(cart -> {
+            state.cartId = cart.getId();
+            // Only lines written before snapshots existed need their product
+            Set<Long> legacy = new HashSet<>();
+            for (CartItem item : cart.getItems()) {
+                if (!item.hasSnapshot()) legacy.add(item.getProductId());
+            }
+            Map<Long, Product> products = new HashMap<>();
+            for (Product p : productRepository.findAllById(legacy)) products.put(p.getId(), p);
+
+            for (CartItem item : cart.getItems()) {
+                Product p = products.get(item.getProductId());
+                Line line = p == null
+                        ? new Line(item.getId(), item.getProductId(), item.getProductName(), item.getProductImageUrl(),
+                                item.getUnitPriceCents(), item.getQuantity())
+                        : new Line(item.getId(), p.getId(), p.getName(), p.getImageUrl(),
+                                Money.toCents(p.getPrice()), item.getQuantity());
+                state.lines.put(line.productId, line);
+            }
+            state.dirty = !legacy.isEmpty();
+        });
+        return state;
+    }
+
+    private ReentrantLock stripe(String sessionId) {
+        return stripes[Math.floorMod(sessionId.hashCode(), stripes.length)];
+    }
+
+    private record PendingLine(Long productId, int quantity, long priceCents, String name, String imageUrl) {}
+
+    private record PendingCart(String sessionId, List<PendingLine> lines) {}
+
+    // Synchronized so the shutdown flush cannot overlap a scheduled one: each snapshots carts under the
+    // stripe lock but writes outside it, and an older snapshot written last would be lost as clean
+    @Scheduled(fixedDelayString = "${cart.store.flush-interval-ms:2000}")
+    public synchronized void flush() {
+        List<PendingCart> batch = new ArrayList<>(flushBatchSize);
+        long idleBefore = System.currentTimeMillis() - idleTimeoutMillis;
+
+        for (String sessionId : active.keySet()) {
+            ReentrantLock lock = stripe(sessionId);
+            PendingCart pending = null;
+            boolean failedBefore = false;
+            lock.lock();
+            try {
+                CartState cart = active.get(sessionId);
+                if (cart == null) continue;
+                if (cart.dirty) {
+                    List<PendingLine> lines = new ArrayList<>(cart.lines.size());
+                    for (Line l : cart.lines.values()) lines.add(new PendingLine(l.productId, l.quantity, l.priceCents, l.name, l.imageUrl));
+                    pending = new PendingCart(sessionId, lines);
+                    cart.dirty = false;
+                    cart.writing++;
+                    failedBefore = cart.failedWrites > 0;
+                } else if (cart.lastAccess < idleBefore && evictable(cart)) {
+                    active.remove(sessionId);
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (pending == null) continue;
+            // A cart that failed before goes on its own, so it cannot fail a whole batch again
+            if (failedBefore) {
+                write(List.of(pending));
+                continue;
+            }
+            batch.add(pending);
+            if (batch.size() >= flushBatchSize) {
+                write(batch);
+                batch = new ArrayList<>(flushBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) write(batch);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void write(List<PendingCart> batch) {
+        Map<String, Cart> written;
+        try {
+            written = flushTimer.record(() -> tx.execute(status -> {
+                Map<String, Cart> saved = new HashMap<>();
+                for (PendingCart pending : batch) saved.put(pending.sessionId(), persist(pending));
+                return saved;
+            }));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                failed(batch.get(0).sessionId(), e);
+            } else {
+                log.warn("Cart flush of {} carts failed, retrying them one by one", batch.size(), e);
+                for (PendingCart pending : batch) write(List.of(pending));
+            }
+            return;
+        }
+        // Hand generated ids back to the in-memory carts
+        written.forEach((sessionId, cart) -> {
+            ReentrantLock lock = stripe(sessionId);
+            lock.lock();
+            try {
+                CartState state = active.get(sessionId);
+                if (state == null) return;
+                state.writing--;
+                state.failedWrites = 0;
+                state.cartId = cart.getId();
+                for (CartItem item : cart.getItems()) {
+                    Line line = state.lines.get(item.getProductId());
+                    if (line != null) line.itemId = item.getId();
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    // The cart is still in memory, as it is not evicted while being written; it stays dirty and is
+    // retried on the next flush until maxWriteAttempts, then only once it has changed again
+    private void failed(String sessionId, RuntimeException e) {
+        ReentrantLock lock = stripe(sessionId);
+        lock.lock();
+        try {
+            CartState state = active.get(sessionId);
+            if (state == null) return;
+            state.writing--;
+            state.failedWrites++;
+            if (state.failedWrites < maxWriteAttempts) {
+                state.dirty = true;
+                log.warn("Cart flush of session {} failed ({} in a row), will retry", sessionId, state.failedWrites, e);
+            } else {
+                log.error("Cart flush of session {} failed {} times, keeping its changes in memory only until it changes again",
+                        sessionId, state.failedWrites, e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Cart persist(PendingCart pending) {
+        Cart cart = cartRepository.findBySessionIdWithItems(pending.sessionId())
+                .orElseGet(() -> new Cart(pending.sessionId()));
+        Map<Long, CartItem> existing = new HashMap<>();
+        cart.ensureSnapshots();
+        for (CartItem item : cart.getItems()) existing.put(item.getProductId(), item);
+
+        for (PendingLine line : pending.lines()) {
+            CartItem item = existing.remove(line.productId());
+            if (item == null) {
+                cart.addItem(new CartItem(cart, productRepository.getReferenceById(line.productId()), line.quantity(),
+                        line.priceCents(), line.name(), line.imageUrl()));
+            } else if (item.getQuantity() != line.quantity()) {
+                cart.changeQuantity(item, line.quantity());
+            }
+        }
+        existing.values().forEach(cart::removeItem);
+        cart.setUpdatedAt(LocalDateTime.now());
+        cart.setHeldBy(inventory.instanceId());
+        return cartRepository.save(cart);
+    }
+
+    // Drop clean carts once a sync has repriced the stored lines, so they reload with fresh snapshots
+    @Order(1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogSynced(CatalogSyncedEvent event) {
+        for (String sessionId : active.keySet()) {
+            ReentrantLock lock = stripe(sessionId);
+            lock.lock();
+            try {
+                CartState state = active.get(sessionId);
+                if (state != null && !state.dirty && evictable(state)) active.remove(sessionId);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Clean is not enough: a snapshot being written may still fail, and a cart whose writes keep
+    // failing has changes only memory holds
+    private static boolean evictable(CartState state) {
+        return state.writing == 0 && state.failedWrites == 0;
+    }
+}
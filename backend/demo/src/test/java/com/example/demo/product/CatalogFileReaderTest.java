@@ -0,0 +1,87 @@
+package com.example.demo.product;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Records must come out whole even when they straddle the mapped window, and reopening at a
+ * returned offset must continue exactly after the records already read.
+ */
+class CatalogFileReaderTest {
+
+    @TempDir Path dir;
+
+    @Test
+    void readsNdjsonAcrossWindowsAndResumesAtOffset() throws IOException {
+        StringBuilder file = new StringBuilder();
+        for (int i = 1; i <= 20; i++) {
+            file.append("{\"id\":").append(i).append(",\"title\":\"Item ").append(i)
+                    .append("\",\"price\":").append(i).append(".5,\"category\":\"books\"}\n");
+        }
+        file.append("not json\n\n{\"id\":21,\"title\":\"Last\",\"price\":1,\"image\":\"x.jpg\",\"rating\":{\"rate\":4}}");
+        Path path = Files.writeString(dir.resolve("catalog.ndjson"), file);
+
+        long offset;
+        try (CatalogFileReader reader = new CatalogFileReader(path, CatalogFileReader.Format.NDJSON, 0, 128)) {
+            for (int i = 1; i <= 7; i++) assertThat(reader.next().id()).isEqualTo(i);
+            offset = reader.offset();
+        }
+        try (CatalogFileReader reader = new CatalogFileReader(path, CatalogFileReader.Format.NDJSON, offset, 128)) {
+            List<FakeStoreProduct> rest = readAll(reader);
+            assertThat(rest).extracting(FakeStoreProduct::id).first().isEqualTo(8L);
+            assertThat(rest).hasSize(14);
+            assertThat(rest.get(12).price()).isEqualByComparingTo(new BigDecimal("20.5"));
+            assertThat(rest.get(13)).isEqualTo(new FakeStoreProduct(21L, "Last", BigDecimal.ONE, null, null, "x.jpg"));
+            assertThat(reader.rejected()).isEqualTo(1);
+            assertThat(reader.offset()).isEqualTo(Files.size(path));
+        }
+    }
+
+    @Test
+    void readsQuotedCsvFieldsByHeaderName() throws IOException {
+        Path path = Files.writeString(dir.resolve("catalog.csv"), """
+                id,title,description,image,category,price,rating\r
+                1,"Desk, oak","Solid ""oak""\nwith drawers",http://img/1.jpg,furniture,120.00,4\r
+                2,Lamp,,,,15,1\r
+                x,Broken,,,,1,1\r
+                """);
+
+        try (CatalogFileReader reader = new CatalogFileReader(path, CatalogFileReader.Format.CSV, 0, 100)) {
+            List<FakeStoreProduct> all = readAll(reader);
+            assertThat(all).containsExactly(
+                    new FakeStoreProduct(1L, "Desk, oak", new BigDecimal("120.00"), "Solid \"oak\"\nwith drawers",
+                            "furniture", "http://img/1.jpg"),
+                    new FakeStoreProduct(2L, "Lamp", new BigDecimal("15"), null, null, null));
+            assertThat(reader.rejected()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void refusesFilesWrittenByTheExport() throws IOException {
+        // Export ids are local keys; importing them would attach products to the wrong upstream ids
+        Path csv = Files.writeString(dir.resolve("export.csv"), "id,name,description,imageUrl,category,price,stock\r\n1,Desk,,,,1,1\r\n");
+        assertThatThrownBy(() -> new CatalogFileReader(csv, CatalogFileReader.Format.CSV, 0, 100))
+                .isInstanceOf(IOException.class).hasMessageContaining("export");
+
+        Path ndjson = Files.writeString(dir.resolve("export.ndjson"), "{\"id\":1,\"name\":\"Desk\",\"price\":1,\"stock\":1}\n");
+        try (CatalogFileReader reader = new CatalogFileReader(ndjson, CatalogFileReader.Format.NDJSON, 0, 100)) {
+            assertThatThrownBy(reader::next).isInstanceOf(IOException.class).hasMessageContaining("export");
+        }
+    }
+
+    private static List<FakeStoreProduct> readAll(CatalogFileReader reader) throws IOException {
+        List<FakeStoreProduct> out = new ArrayList<>();
+        for (FakeStoreProduct p; (p = reader.next()) != null; ) out.add(p);
+        return out;
+    }
+}
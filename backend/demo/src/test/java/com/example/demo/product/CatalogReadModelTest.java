@@ -0,0 +1,133 @@
+package com.example.demo.product;
+
+import com.example.demo.category.Category;
+import com.example.demo.category.CategoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Listings from the read model must order and page like the database queries they replace, and
+ * show a new catalog only once the snapshot has been swapped.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:readmodel;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "catalog.read-model.enabled=true"
+})
+class CatalogReadModelTest {
+
+    @Autowired CatalogReadModel readModel;
+    @Autowired ProductRepository products;
+    @Autowired CategoryRepository categories;
+
+    private Long cherry, apple, banana, date, elder;
+
+    @BeforeEach
+    void seed() {
+        if (products.count() == 0) {
+            Category fruit = category("Fruit");
+            Category tools = category("Tools");
+            product("cherry", "5.00", fruit);
+            product("Apple", "3.00", fruit);
+            product("banana", "5.00", fruit);
+            product("Date", "1.00", fruit);
+            product("elder", "2.50", tools);
+            readModel.rebuild();
+        }
+        List<Product> all = products.findAll(Sort.by("id"));
+        cherry = all.get(0).getId();
+        apple = all.get(1).getId();
+        banana = all.get(2).getId();
+        date = all.get(3).getId();
+        elder = all.get(4).getId();
+    }
+
+    @Test
+    void ordersLikeTheDatabase() {
+        // Equal prices keep id order, names compare case-insensitively
+        assertThat(ids(null, null, null, PageRequest.of(0, 10, Sort.by("price"))))
+                .containsExactly(date, elder, apple, cherry, banana);
+        assertThat(ids(null, null, null, PageRequest.of(0, 10, Sort.by("name"))))
+                .containsExactly(apple, banana, cherry, date, elder);
+        assertThat(ids(null, null, null, PageRequest.of(0, 10, Sort.by("name").descending())))
+                .containsExactly(elder, date, cherry, banana, apple);
+        assertThat(ids(null, null, null, PageRequest.of(0, 10, Sort.by("id").descending())))
+                .containsExactly(elder, date, banana, apple, cherry);
+        // Several sort keys are left to the database
+        assertThat(readModel.query(null, null, null, null, PageRequest.of(0, 10, Sort.by("price", "name")))).isEmpty();
+    }
+
+    @Test
+    void pagesAndCountsAfterFiltering() {
+        Page<ProductDto> first = readModel.query("fruit", null, new BigDecimal("2"), null,
+                PageRequest.of(0, 2, Sort.by("price"))).orElseThrow();
+        assertThat(first.getContent()).extracting(ProductDto::id).containsExactly(apple, cherry);
+        assertThat(first.getTotalElements()).isEqualTo(3);
+
+        Page<ProductDto> second = readModel.query("fruit", null, new BigDecimal("2"), null,
+                PageRequest.of(1, 2, Sort.by("price"))).orElseThrow();
+        assertThat(second.getContent()).extracting(ProductDto::id).containsExactly(banana);
+
+        Page<ProductDto> past = readModel.query("fruit", null, new BigDecimal("2"), null,
+                PageRequest.of(5, 2, Sort.by("price"))).orElseThrow();
+        assertThat(past.getContent()).isEmpty();
+        assertThat(past.getTotalElements()).isEqualTo(3);
+
+        assertThat(ids("unknown", null, null, PageRequest.of(0, 10, Sort.by("id")))).isEmpty();
+        assertThat(ids(null, "AN", null, PageRequest.of(0, 10, Sort.by("id")))).containsExactly(banana);
+    }
+
+    @Test
+    void relevanceKeepsTheRankedOrder() {
+        List<Long> ranked = List.of(elder, cherry, date, 999_999L);
+        Page<ProductDto> page = readModel.queryHits(null, ranked, null, null,
+                PageRequest.of(0, 10, Sort.by(ProductService.RELEVANCE))).orElseThrow();
+        assertThat(page.getContent()).extracting(ProductDto::id).containsExactly(elder, cherry, date);
+
+        Page<ProductDto> byPrice = readModel.queryHits("fruit", ranked, null, null,
+                PageRequest.of(0, 10, Sort.by("price").descending())).orElseThrow();
+        assertThat(byPrice.getContent()).extracting(ProductDto::id).containsExactly(cherry, date);
+    }
+
+    @Test
+    void newProductsShowAfterTheRebuildOnly() {
+        Long fig = product("fig", "0.50", categories.findAll().get(0));
+        try {
+            assertThat(ids(null, null, null, PageRequest.of(0, 10, Sort.by("price")))).doesNotContain(fig);
+            readModel.rebuild();
+            assertThat(ids(null, null, null, PageRequest.of(0, 10, Sort.by("price")))).first().isEqualTo(fig);
+        } finally {
+            products.deleteById(fig);
+            readModel.rebuild();
+        }
+    }
+
+    private List<Long> ids(String category, String q, BigDecimal min, PageRequest page) {
+        return readModel.query(category, q, min, null, page).orElseThrow()
+                .getContent().stream().map(ProductDto::id).toList();
+    }
+
+    private Category category(String name) {
+        Category c = new Category();
+        c.setName(name);
+        return categories.save(c);
+    }
+
+    private Long product(String name, String price, Category category) {
+        Product p = new Product();
+        p.setName(name);
+        p.setPrice(new BigDecimal(price));
+        p.setStock(5);
+        p.setCategory(category);
+        return products.save(p).getId();
+    }
+}
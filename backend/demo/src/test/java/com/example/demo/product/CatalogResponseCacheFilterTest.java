@@ -0,0 +1,107 @@
+package com.example.demo.product;
+
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cached responses are keyed by the catalog generation and revalidated by ETag; a reservation
+ * change must evict the cached responses that show one of its products, and only those.
+ */
+class CatalogResponseCacheFilterTest {
+
+    private final CatalogGeneration generation = new CatalogGeneration();
+    private final CatalogResponseCacheFilter filter =
+            new CatalogResponseCacheFilter(generation, 1 << 20, Duration.ofSeconds(60));
+    private final List<String> rendered = new ArrayList<>();
+    // Part of every rendered body, standing in for the catalog contents
+    private String catalog = "v1";
+
+    @Test
+    void matchingEtagIsAnsweredWithNotModified() throws Exception {
+        String listing = "/api/products?category=books";
+        MockHttpServletResponse first = get(listing, null);
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+        assertThat(first.getHeader(HttpHeaders.CACHE_CONTROL)).isEqualTo("public, max-age=60, must-revalidate");
+
+        MockHttpServletResponse revalidated = get(listing, etag);
+        assertThat(revalidated.getStatus()).isEqualTo(304);
+        assertThat(revalidated.getContentAsByteArray()).isEmpty();
+        assertThat(get(listing, "\"other\", " + etag).getStatus()).isEqualTo(304);
+        assertThat(get(listing, "\"other\"").getContentAsString()).isEqualTo(first.getContentAsString());
+        assertThat(rendered).containsExactly(listing);
+    }
+
+    @Test
+    void newGenerationRendersAgainAndRevalidatesByBody() throws Exception {
+        String listing = "/api/products?category=books";
+        String etag = get(listing, null).getHeader(HttpHeaders.ETAG);
+
+        // A sync that left this listing as it was: rendered again under the new generation, same ETag
+        generation.onCatalogSynced(new CatalogSyncedEvent(null, 1));
+        assertThat(get(listing, etag).getStatus()).isEqualTo(304);
+        assertThat(rendered).hasSize(2);
+
+        // One that changed it: the old ETag no longer matches
+        catalog = "v2";
+        generation.onCatalogSynced(new CatalogSyncedEvent(null, 1));
+        MockHttpServletResponse changed = get(listing, etag);
+        assertThat(changed.getStatus()).isEqualTo(200);
+        assertThat(changed.getHeader(HttpHeaders.ETAG)).isNotEqualTo(etag);
+        assertThat(changed.getContentAsString()).contains("v2");
+        assertThat(rendered).hasSize(3);
+    }
+
+    @Test
+    void stockChangeEvictsOnlyResponsesShowingTheProduct() throws Exception {
+        String electronics = "/api/products?category=electronics";
+        String books = "/api/products?category=books";
+        String product = "/api/products/1";
+        String otherProduct = "/api/products/4";
+        List<String> all = List.of(electronics, books, product, otherProduct, "/api/categories");
+        for (String uri : all) get(uri);
+        for (String uri : all) get(uri);
+        assertThat(rendered).containsExactlyElementsOf(all);
+
+        filter.onStockChanged(new StockChangedEvent(Set.of(1L)));
+        rendered.clear();
+        for (String uri : all) get(uri);
+
+        assertThat(rendered).containsExactly(electronics, product);
+    }
+
+    private void get(String uri) throws Exception {
+        get(uri, null);
+    }
+
+    private MockHttpServletResponse get(String uri, String ifNoneMatch) throws Exception {
+        int query = uri.indexOf('?');
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", query < 0 ? uri : uri.substring(0, query));
+        if (query >= 0) request.setQueryString(uri.substring(query + 1));
+        if (ifNoneMatch != null) request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        if (uri.contains("category=")) request.setParameter("category", uri.substring(uri.indexOf('=') + 1));
+        FilterChain chain = (req, res) -> {
+            rendered.add(uri);
+            // Electronics lists products 1-3, books 4-6
+            if (uri.contains("electronics")) req.setAttribute(CatalogResponseCacheFilter.PRODUCT_IDS, Set.of(1L, 2L, 3L));
+            if (uri.contains("books")) req.setAttribute(CatalogResponseCacheFilter.PRODUCT_IDS, Set.of(4L, 5L, 6L));
+            res.setContentType("application/json");
+            res.getOutputStream().write(("{\"uri\":\"" + uri + "\",\"catalog\":\"" + catalog + "\"}")
+                    .getBytes(StandardCharsets.UTF_8));
+        };
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.demo.product;
+
+import com.example.demo.category.Category;
+import com.example.demo.category.CategoryRepository;
+import com.jayway.jsonpath.JsonPath;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Listings served from the read model and the response cache must show the stock left after
+ * cart reservations, as soon as the reconciler has written them.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:catalogstock;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "catalog.read-model.enabled=true",
+        "catalog.response-cache.enabled=true",
+        "inventory.reconcile-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+class CatalogStockTest {
+
+    @Autowired MockMvc mvc;
+    @Autowired ProductRepository products;
+    @Autowired CategoryRepository categories;
+    @Autowired CatalogReadModel readModel;
+    @Autowired InventoryReservations inventory;
+
+    private Long reservedId;
+
+    @BeforeEach
+    void seed() {
+        if (products.count() == 0) {
+            for (String name : new String[]{"electronics", "books"}) {
+                Category c = new Category();
+                c.setName(name);
+                c = categories.save(c);
+                for (int i = 0; i < 3; i++) {
+                    Product p = new Product();
+                    p.setName(name + " item " + i);
+                    p.setDescription("description " + i);
+                    p.setPrice(new BigDecimal(10 + i));
+                    p.setStock(10);
+                    p.setCategory(c);
+                    products.save(p);
+                }
+            }
+            readModel.rebuild();
+        }
+        // Electronics were saved first
+        reservedId = products.findAll(Sort.by("id")).get(0).getId();
+    }
+
+    @Test
+    void listingsShowStockLeftAfterReservations() throws Exception {
+        String listing = "/api/products?category=electronics&sortBy=id&order=asc";
+        assertThat(stockIn(listing)).isEqualTo(10);
+
+        mvc.perform(post("/api/cart/items")
+                        .cookie(new Cookie("CART_SESSION_ID", "catalog-stock-test"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productId\":" + reservedId + ",\"quantity\":3}"))
+                .andExpect(status().isOk());
+        inventory.reconcile();
+
+        assertThat(stockIn(listing)).isEqualTo(7);
+        assertThat(readModel.query("electronics", null, null, null, PageRequest.of(0, 12, Sort.by("id")))
+                .orElseThrow().getContent().get(0).stock()).isEqualTo(7);
+    }
+
+    // Stock of reservedId in the listing, which starts with it
+    private int stockIn(String listing) throws Exception {
+        String body = mvc.perform(get(listing)).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        assertThat(((Number) JsonPath.read(body, "$.content[0].id")).longValue()).isEqualTo(reservedId);
+        return JsonPath.read(body, "$.content[0].stock");
+    }
+}
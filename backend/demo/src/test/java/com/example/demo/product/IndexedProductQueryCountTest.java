@@ -0,0 +1,31 @@
+package com.example.demo.product;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+// Same bounds with q served by the search index; a term matching every product costs no more
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:querycountindexed;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "catalog.search.max-hits=20",
+        "catalog.search.max-candidates=20"
+})
+class IndexedProductQueryCountTest extends ProductQueryCountTest {
+
+    @Autowired ProductSearchIndex searchIndex;
+
+    @BeforeEach
+    void index() {
+        searchIndex.onStartup();
+    }
+
+    @Test
+    void broadTermsStayWithinOneInList() throws Exception {
+        // All 30 products match "item"; only the best 20 are filtered and sorted
+        assertStatements("/api/products?size=12&q=item", 2);
+        assertStatements("/api/products?size=12&page=1&q=item&sortBy=price&order=asc", 2);
+        assertStatements("/api/products?size=12&q=item&category=books", 2);
+    }
+}
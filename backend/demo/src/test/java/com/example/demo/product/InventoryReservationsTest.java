@@ -0,0 +1,105 @@
+package com.example.demo.product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A restarting instance takes back only the reservations it wrote itself and rebuilds them from
+ * its own carts; those of other instances sharing the database stay, and ones nobody accounts for
+ * are dropped.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reservations;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "inventory.instance-id=node-a",
+        "inventory.reconcile-interval-ms=3600000"
+})
+class InventoryReservationsTest {
+
+    @Autowired InventoryReservations inventory;
+    @Autowired ProductRepository products;
+    @Autowired JdbcTemplate jdbc;
+    @Autowired PlatformTransactionManager txManager;
+    @Autowired EntityManagerFactory emf;
+    @Autowired ApplicationEventPublisher events;
+
+    @Test
+    void restartKeepsReservationsOfOtherInstances() {
+        Long shared = product("shared");
+        Long legacy = product("legacy");
+
+        // node-b holds 4 of the shared product; legacy has a reservation from before shares were kept
+        jdbc.update("UPDATE products SET reserved = 4 WHERE id = ?", shared);
+        jdbc.update("INSERT INTO reservation_shares (instance_id, product_id, units) VALUES ('node-b', ?, 4)", shared);
+        cart("node-b-cart", "node-b", shared, 4);
+        jdbc.update("UPDATE products SET reserved = 5 WHERE id = ?", legacy);
+
+        inventory.hold("restart-test", shared, 3);
+        inventory.reconcile();
+        assertThat(reserved(shared)).isEqualTo(7);
+        assertThat(share("node-a", shared)).isEqualTo(3);
+
+        restartedNodeA().restore();
+
+        assertThat(reserved(shared)).isEqualTo(4);
+        assertThat(share("node-a", shared)).isNull();
+        assertThat(share("node-b", shared)).isEqualTo(4);
+        assertThat(reserved(legacy)).isZero();
+    }
+
+    @Test
+    void restartRebuildsHoldsOfItsOwnCartsOnly() {
+        Long product = product("rebuilt");
+        jdbc.update("UPDATE products SET reserved = 4 WHERE id = ?", product);
+        jdbc.update("INSERT INTO reservation_shares (instance_id, product_id, units) VALUES ('node-b', ?, 4)", product);
+        cart("node-b-rebuild", "node-b", product, 4);
+        cart("node-a-rebuild", "node-a", product, 2);
+
+        InventoryReservations restarted = restartedNodeA();
+        restarted.restore();
+        restarted.reconcile();
+
+        // node-b's 4 units are already counted; only node-a's cart is held again
+        assertThat(reserved(product)).isEqualTo(6);
+        assertThat(share("node-a", product)).isEqualTo(2);
+    }
+
+    private InventoryReservations restartedNodeA() {
+        return new InventoryReservations(jdbc, txManager, emf, events, new SimpleMeterRegistry(),
+                true, "node-a", Duration.ofMinutes(15), 8);
+    }
+
+    private void cart(String sessionId, String heldBy, Long productId, int quantity) {
+        jdbc.update("INSERT INTO carts (session_id, created_at, updated_at, total_amount_cents, total_items, held_by) "
+                + "VALUES (?, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 0, 0, ?)", sessionId, heldBy);
+        jdbc.update("INSERT INTO cart_items (cart_id, product_id, quantity) "
+                + "SELECT id, ?, ? FROM carts WHERE session_id = ?", productId, quantity, sessionId);
+    }
+
+    private Long product(String name) {
+        Product p = new Product();
+        p.setName(name);
+        p.setPrice(BigDecimal.TEN);
+        p.setStock(10);
+        return products.save(p).getId();
+    }
+
+    private int reserved(Long productId) {
+        return jdbc.queryForObject("SELECT reserved FROM products WHERE id = ?", Integer.class, productId);
+    }
+
+    private Integer share(String instanceId, Long productId) {
+        return jdbc.query("SELECT units FROM reservation_shares WHERE instance_id = ? AND product_id = ?",
+                rs -> rs.next() ? rs.getInt(1) : null, instanceId, productId);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.demo.product;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Must agree with a HashMap through growth and deletions in the middle of probe runs, and keep the
+ * largest counts when trimmed.
+ */
+class LongCountMapTest {
+
+    @Test
+    void matchesHashMapUnderRandomAddsAndRemoves() {
+        LongCountMap map = new LongCountMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 50_000; i++) {
+            long key = 1 + random.nextInt(500);
+            int delta = random.nextInt(5) - 2;
+            int count = map.add(key, delta);
+            int want = Math.max(0, expected.getOrDefault(key, 0) + delta);
+            if (want == 0) expected.remove(key);
+            else expected.put(key, want);
+            assertThat(count).isEqualTo(want);
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        Map<Long, Integer> seen = new HashMap<>();
+        map.forEach(seen::put);
+        assertThat(seen).isEqualTo(expected);
+
+        expected.keySet().forEach(map::remove);
+        assertThat(map.size()).isZero();
+        assertThat(map.get(1)).isZero();
+    }
+
+    @Test
+    void retainTopKeepsLargestCounts() {
+        LongCountMap map = new LongCountMap();
+        for (long key = 1; key <= 100; key++) map.add(key, (int) key);
+        map.add(200, 98);
+
+        map.retainTop(3);
+
+        assertThat(map.size()).isEqualTo(3);
+        assertThat(map.get(100)).isEqualTo(100);
+        assertThat(map.get(99)).isEqualTo(99);
+        assertThat(map.get(98) + map.get(200)).isEqualTo(98);
+        assertThat(map.get(50)).isZero();
+    }
+}
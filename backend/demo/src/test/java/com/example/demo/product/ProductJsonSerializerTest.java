@@ -0,0 +1,57 @@
+package com.example.demo.product;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cached fragments must produce exactly the bytes Jackson writes for the record without the
+ * serializer, on first encoding, when reused and after the product changes.
+ */
+class ProductJsonSerializerTest {
+
+    private static final Instant T1 = Instant.parse("2026-01-01T00:00:00Z");
+    private static final Instant T2 = Instant.parse("2026-01-02T00:00:00Z");
+
+    private final ObjectMapper plain = new ObjectMapper();
+    private final ObjectMapper cached = new ObjectMapper()
+            .registerModule(new SimpleModule().addSerializer(ProductDto.class, new ProductJsonSerializer(1 << 20)));
+
+    @Test
+    void matchesDefaultSerializationByteForByte() throws Exception {
+        List<ProductDto> products = List.of(
+                new ProductDto(1L, "Plain", "A short description", "http://img/1.jpg", "electronics",
+                        new BigDecimal("19.99"), 5, T1),
+                new ProductDto(2L, "Quotes \"and\" \\backslashes\\", "Line\nbreak\ttab\u0001 control </script>",
+                        null, "men's clothing", new BigDecimal("1E+3"), 0, T1),
+                new ProductDto(3L, "Ünïcödé ✓ 😀", "x".repeat(10_000), "", "jewelery",
+                        new BigDecimal("0.10"), null, T1),
+                new ProductDto(4L, null, null, null, null, null, null, T1),
+                new ProductDto(null, "Unsaved", "No id, never cached", null, null, BigDecimal.ONE, 1, null));
+
+        byte[] expected = plain.writeValueAsBytes(products);
+        // First pass encodes, second reuses the cached fragments
+        assertThat(cached.writeValueAsBytes(products)).isEqualTo(expected);
+        assertThat(cached.writeValueAsBytes(products)).isEqualTo(expected);
+        for (ProductDto dto : products) {
+            assertThat(cached.writeValueAsBytes(dto)).isEqualTo(plain.writeValueAsBytes(dto));
+        }
+    }
+
+    @Test
+    void reencodesWhenTheProductChanges() throws Exception {
+        ProductDto original = new ProductDto(7L, "Lamp", "Warm light", null, "home", new BigDecimal("30.00"), 3, T1);
+        ProductDto restocked = new ProductDto(7L, "Lamp", "Warm light", null, "home", new BigDecimal("30.00"), 2, T1);
+        ProductDto renamed = new ProductDto(7L, "Desk lamp", "Warm light", null, "home", new BigDecimal("30.00"), 2, T2);
+
+        for (ProductDto dto : List.of(original, restocked, renamed, original)) {
+            assertThat(cached.writeValueAsBytes(dto)).isEqualTo(plain.writeValueAsBytes(dto));
+        }
+    }
+}
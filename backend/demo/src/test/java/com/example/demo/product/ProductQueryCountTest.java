@@ -0,0 +1,88 @@
+package com.example.demo.product;
+
+import com.example.demo.category.Category;
+import com.example.demo.category.CategoryRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Guards against N+1 regressions: every catalog endpoint must stay within a fixed number of
+ * SQL statements per request, independent of page size.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:querycount;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "catalog.search.enabled=false"
+})
+@AutoConfigureMockMvc
+class ProductQueryCountTest {
+
+    @Autowired MockMvc mvc;
+    @Autowired ProductRepository products;
+    @Autowired CategoryRepository categories;
+    @Autowired EntityManagerFactory emf;
+
+    private Long anyId;
+
+    @BeforeEach
+    void seed() {
+        if (products.count() == 0) {
+            for (String name : new String[]{"electronics", "jewelery", "books"}) {
+                Category c = new Category();
+                c.setName(name);
+                c = categories.save(c);
+                for (int i = 0; i < 10; i++) {
+                    Product p = new Product();
+                    p.setName(name + " item " + i);
+                    p.setDescription("description " + i);
+                    p.setPrice(new BigDecimal(10 + i));
+                    p.setStock(5);
+                    p.setCategory(c);
+                    products.save(p);
+                }
+            }
+        }
+        anyId = products.findAll().get(0).getId();
+    }
+
+    @Test
+    void listingRunsPageAndCountOnly() throws Exception {
+        assertStatements("/api/products?size=12", 2);
+        assertStatements("/api/products?size=12&category=jewelery", 2);
+        assertStatements("/api/products?size=12&q=item&sortBy=price&order=asc", 2);
+        assertStatements("/api/products?size=12&category=books&q=item", 2);
+    }
+
+    @Test
+    void detailAndScrollRunOneStatement() throws Exception {
+        assertStatements("/api/products/" + anyId, 1);
+        assertStatements("/api/products/scroll?size=12&sortBy=price", 1);
+    }
+
+    @Test
+    void exportIsOneScan() throws Exception {
+        assertStatements("/api/products/export", 1);
+        assertStatements("/api/products/export?format=csv&category=books", 1);
+    }
+
+    // Upper bound: Spring Data skips the count query when the first page is not full
+    void assertStatements(String url, long max) throws Exception {
+        Statistics stats = emf.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+        mvc.perform(get(url)).andExpect(status().isOk());
+        assertThat(stats.getPrepareStatementCount()).as("SQL statements for %s", url).isLessThanOrEqualTo(max);
+    }
+}
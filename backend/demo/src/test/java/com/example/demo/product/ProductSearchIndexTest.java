@@ -0,0 +1,47 @@
+package com.example.demo.product;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Every matching product must come back however many dictionary terms a token expands to, up to
+ * max-candidates best matches, and stray short tokens must not turn a match into a miss.
+ */
+class ProductSearchIndexTest {
+
+    @Test
+    void returnsAllMatchesOfWideExpansions() {
+        ProductSearchIndex index = new ProductSearchIndex(null, true, 10, 5000);
+        for (long id = 1; id <= 2000; id++) index.index(id, "shirt s" + id, "cotton");
+
+        assertThat(index.search("shi")).hasSize(2000);
+        assertThat(index.search("s1999")).containsExactly(1999L);
+        // "1999" is a substring of the term "s1999" only, reached through its trigrams
+        assertThat(index.search("999")).contains(999L, 1999L);
+    }
+
+    @Test
+    void ignoresSingleLetterTokensNextToLongerOnes() {
+        ProductSearchIndex index = new ProductSearchIndex(null, true, 10, 5000);
+        for (long id = 1; id <= 500; id++) index.index(id, "product " + id, "description");
+        index.index(1000L, "Men's Casual Slim Fit", "stretch cotton");
+
+        assertThat(index.search("men's")).containsExactly(1000L);
+        assertThat(index.search("slim s")).containsExactly(1000L);
+    }
+
+    @Test
+    void broadTermsKeepTheBestMaxCandidates() {
+        ProductSearchIndex index = new ProductSearchIndex(null, true, 10, 50);
+        for (long id = 1; id <= 2000; id++) index.index(id, "shirt " + id, "cotton");
+        index.index(1L, "cotton shirt", "cotton");
+
+        List<Long> hits = index.search("cotton");
+        // The name match ranks first, then the newest description matches
+        assertThat(hits).hasSize(50).startsWith(1L, 2000L, 1999L);
+        assertThat(hits.get(49)).isEqualTo(1952L);
+    }
+}
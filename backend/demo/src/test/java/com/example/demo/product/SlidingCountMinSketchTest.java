@@ -0,0 +1,44 @@
+package com.example.demo.product;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Estimates must never undercount what is still in the window, stay close for heavy keys among
+ * many light ones, and forget slices once they slide out.
+ */
+class SlidingCountMinSketchTest {
+
+    private static final long MINUTE = 60_000;
+
+    @Test
+    void estimatesHeavyKeysAmongNoise() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(10 * MINUTE, 10, 4, 1024);
+        long now = 1_000 * MINUTE;
+        for (long key = 1; key <= 5000; key++) sketch.add(key, 1, now);
+        sketch.add(42, 500, now);
+        sketch.add(7, 200, now + MINUTE);
+
+        assertThat(sketch.estimate(42, now + MINUTE)).isBetween(501L, 501L + 20);
+        assertThat(sketch.estimate(7, now + MINUTE)).isBetween(201L, 201L + 20);
+        for (long key = 100; key < 200; key++) {
+            assertThat(sketch.estimate(key, now + MINUTE)).isGreaterThanOrEqualTo(1);
+        }
+    }
+
+    @Test
+    void slicesExpireAsTheWindowSlides() {
+        SlidingCountMinSketch sketch = new SlidingCountMinSketch(10 * MINUTE, 10, 4, 256);
+        long start = 1_000 * MINUTE;
+        sketch.add(1, 3, start);
+        sketch.add(1, 4, start + 5 * MINUTE);
+
+        assertThat(sketch.estimate(1, start + 9 * MINUTE)).isEqualTo(7);
+        assertThat(sketch.estimate(1, start + 10 * MINUTE)).isEqualTo(4);
+        // Reusing the first slice's position wipes what it held
+        sketch.add(2, 1, start + 10 * MINUTE);
+        assertThat(sketch.estimate(1, start + 10 * MINUTE)).isEqualTo(4);
+        assertThat(sketch.estimate(1, start + 15 * MINUTE)).isZero();
+    }
+}
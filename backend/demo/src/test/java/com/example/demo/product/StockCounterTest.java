@@ -0,0 +1,67 @@
+package com.example.demo.product;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Many threads racing for a hot product must get exactly the units there were, however they
+ * land on the shards, and a failed reservation must not lose units.
+ */
+class StockCounterTest {
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        StockCounter counter = new StockCounter(1L, 8, 1000, 3, 0);
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int hint = t;
+            results.add(pool.submit(() -> {
+                start.await();
+                int got = 0;
+                for (int i = 0; i < 500; i++) {
+                    int units = 1 + i % 3;
+                    if (counter.reserve(units, hint)) got += units;
+                }
+                return got;
+            }));
+        }
+        start.countDown();
+        int reserved = 0;
+        for (Future<Integer> f : results) reserved += f.get();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(reserved).isEqualTo(997);
+        assertThat(counter.available()).isZero();
+        assertThat(counter.drainPending()).isEqualTo(997);
+    }
+
+    @Test
+    void reservationsGatherAcrossShardsAndGiveBackOnShortfall() {
+        StockCounter counter = new StockCounter(1L, 4, 10, 0, 0);
+
+        assertThat(counter.reserve(11, 0)).isFalse();
+        assertThat(counter.available()).isEqualTo(10);
+        assertThat(counter.reserve(9, 1)).isTrue();
+        counter.release(4, 2);
+        assertThat(counter.available()).isEqualTo(5);
+        assertThat(counter.drainPending()).isEqualTo(5);
+
+        // Stock lowered elsewhere by more than is left: availability bottoms out at zero
+        counter.adjust(-7);
+        assertThat(counter.available()).isZero();
+        assertThat(counter.reserve(1, 0)).isFalse();
+    }
+}
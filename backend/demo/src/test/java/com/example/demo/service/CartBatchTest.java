@@ -0,0 +1,84 @@
+package com.example.demo.service;
+
+import com.example.demo.product.Product;
+import com.example.demo.product.ProductRepository;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * PATCH /api/cart folds the operations on each product into one net change, so removing and re-adding
+ * a line that is already in the cart in the same batch keeps it instead of failing.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:cartbatch;DB_CLOSE_DELAY=-1;MODE=PostgreSQL")
+@AutoConfigureMockMvc
+class CartBatchTest {
+
+    @Autowired MockMvc mvc;
+    @Autowired ProductRepository products;
+
+    private Long productId;
+    private Cookie session;
+
+    @BeforeEach
+    void seed() throws Exception {
+        Product p = new Product();
+        p.setName("Batch item");
+        p.setPrice(new BigDecimal("12.50"));
+        p.setStock(50);
+        productId = products.save(p).getId();
+        session = new Cookie("CART_SESSION_ID", UUID.randomUUID().toString());
+        mvc.perform(post("/api/cart/items").cookie(session)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productId\":" + productId + ",\"quantity\":3}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void removeThenAddKeepsTheLine() throws Exception {
+        batch("""
+                {"op":"REMOVE","productId":%1$d},{"op":"ADD","productId":%1$d,"quantity":2}""")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].quantity").value(2));
+    }
+
+    @Test
+    void setZeroThenAddKeepsTheLine() throws Exception {
+        batch("""
+                {"op":"SET","productId":%1$d,"quantity":0},{"op":"ADD","productId":%1$d,"quantity":1},\
+                {"op":"ADD","productId":%1$d,"quantity":4}""")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].quantity").value(5));
+    }
+
+    @Test
+    void removeThenAddThenRemoveDropsTheLine() throws Exception {
+        batch("""
+                {"op":"REMOVE","productId":%1$d},{"op":"ADD","productId":%1$d,"quantity":2},{"op":"REMOVE","productId":%1$d}""")
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(0)));
+    }
+
+    private ResultActions batch(String operations) throws Exception {
+        return mvc.perform(patch("/api/cart").cookie(session)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"operations\":[" + operations.formatted(productId) + "]}"));
+    }
+}
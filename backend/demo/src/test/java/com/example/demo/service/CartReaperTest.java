@@ -0,0 +1,82 @@
+package com.example.demo.service;
+
+import com.example.demo.product.Product;
+import com.example.demo.product.ProductDto;
+import com.example.demo.product.ProductRepository;
+import com.example.demo.product.RelatedProducts;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Carts deleted by the reaper no longer count towards "frequently bought together".
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cartreaper;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "catalog.related.cache-ttl=0s"
+})
+@AutoConfigureMockMvc
+class CartReaperTest {
+
+    @DynamicPropertySource
+    static void snapshotFile(DynamicPropertyRegistry registry) throws IOException {
+        // A fresh path, so counts of an earlier run are not loaded
+        String file = Files.createTempDirectory("reaper-test").resolve("related.bin").toString();
+        registry.add("catalog.related.snapshot-file", () -> file);
+    }
+
+    @Autowired MockMvc mvc;
+    @Autowired ProductRepository products;
+    @Autowired RelatedProducts related;
+    @Autowired CartReaper reaper;
+    @Autowired JdbcTemplate jdbc;
+
+    @Test
+    void reapedCartsStopCountingAsBoughtTogether() throws Exception {
+        Long lamp = product("Lamp");
+        Long bulb = product("Bulb");
+        Long shade = product("Shade");
+        add("abandoned", lamp, bulb);
+        add("active", lamp, shade);
+        assertThat(related.related(lamp, 8)).extracting(ProductDto::id).containsExactly(bulb, shade);
+
+        jdbc.update("UPDATE carts SET updated_at = ? WHERE session_id = 'abandoned'", LocalDateTime.now().minusDays(30));
+        assertThat(reaper.reap()).isEqualTo(1);
+
+        assertThat(related.related(lamp, 8)).extracting(ProductDto::id).containsExactly(shade);
+        assertThat(related.related(bulb, 8)).isEmpty();
+    }
+
+    private void add(String session, Long... productIds) throws Exception {
+        for (Long id : productIds) {
+            mvc.perform(post("/api/cart/items").cookie(new Cookie("CART_SESSION_ID", session))
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"productId\":" + id + ",\"quantity\":1}"))
+                    .andExpect(status().isOk());
+        }
+    }
+
+    private Long product(String name) {
+        Product p = new Product();
+        p.setName(name);
+        p.setPrice(BigDecimal.TEN);
+        p.setStock(10);
+        return products.save(p).getId();
+    }
+}
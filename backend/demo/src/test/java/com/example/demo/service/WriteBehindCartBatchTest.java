@@ -0,0 +1,11 @@
+package com.example.demo.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+// Same batches against the in-memory cart store
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:cartbatchwb;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "cart.store.mode=write-behind"
+})
+class WriteBehindCartBatchTest extends CartBatchTest {
+}
@@ -0,0 +1,91 @@
+package com.example.demo.service;
+
+import com.example.demo.product.CatalogSyncedEvent;
+import com.example.demo.product.Product;
+import com.example.demo.product.ProductRepository;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * A cart the database rejects does not hold back the rest of its batch, and its changes stay in
+ * memory (not evicted, not lost) until a write succeeds.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:writebehind;DB_CLOSE_DELAY=-1;MODE=PostgreSQL",
+        "cart.store.mode=write-behind",
+        "cart.store.flush-interval-ms=3600000",
+        "cart.store.idle-timeout-ms=0",
+        "cart.store.max-write-attempts=2"
+})
+@AutoConfigureMockMvc
+class WriteBehindCartStoreTest {
+
+    @Autowired MockMvc mvc;
+    @Autowired ProductRepository products;
+    @Autowired WriteBehindCartStore store;
+    @Autowired JdbcTemplate jdbc;
+
+    @Test
+    void failedCartIsRetriedAloneAndKeptUntilWritten() throws Exception {
+        Product p = new Product();
+        p.setName("Flush item");
+        p.setPrice(BigDecimal.TEN);
+        p.setStock(100);
+        Long productId = products.save(p).getId();
+        add("good", productId, 1);
+        add("poison", productId, 13);
+
+        // Only the poison cart's line breaks the constraint
+        jdbc.execute("ALTER TABLE cart_items ADD CONSTRAINT flush_test_reject CHECK (quantity <> 13)");
+        try {
+            store.flush();
+            assertThat(stored("good")).isEqualTo(1);
+            assertThat(stored("poison")).isNull();
+
+            // Failed twice: no more retries, but neither a sync nor the idle timeout drops it
+            store.flush();
+            store.onCatalogSynced(new CatalogSyncedEvent(null, 1));
+            store.flush();
+            assertThat(stored("poison")).isNull();
+            mvc.perform(get("/api/cart").cookie(new Cookie("CART_SESSION_ID", "poison")))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items[0].quantity").value(13));
+        } finally {
+            jdbc.execute("ALTER TABLE cart_items DROP CONSTRAINT flush_test_reject");
+        }
+
+        // The next change is written, and then the cart can go
+        add("poison", productId, 1);
+        store.flush();
+        assertThat(stored("poison")).isEqualTo(14);
+        store.flush();
+        mvc.perform(get("/api/cart").cookie(new Cookie("CART_SESSION_ID", "poison")))
+                .andExpect(jsonPath("$.items[0].quantity").value(14));
+    }
+
+    private void add(String session, Long productId, int quantity) throws Exception {
+        mvc.perform(post("/api/cart/items").cookie(new Cookie("CART_SESSION_ID", session))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"productId\":" + productId + ",\"quantity\":" + quantity + "}"))
+                .andExpect(status().isOk());
+    }
+
+    private Integer stored(String session) {
+        return jdbc.query("SELECT i.quantity FROM cart_items i JOIN carts c ON c.id = i.cart_id WHERE c.session_id = ?",
+                rs -> rs.next() ? rs.getInt(1) : null, session);
+    }
+}